@@ -0,0 +1,265 @@
+import benchmarks.Workload;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Sets up the simulator core for the JMH benchmarks. This class is in the unnamed package so it
+ * can reach the core classes, and the benchmarks in the benchmarks package only see the
+ * Workload interface.
+ */
+public final class CoreWorkloads {
+    private static final int RACE_TRACK_LENGTH = 1_000_000;
+    private static final double COMPETITION_DISTANCE = 500;
+    private static final String[] GEAR = {"saddle", "horseshoes", "bridle"};
+    private static final int KERNEL_TICKS_PER_RACE = 16;
+
+    private CoreWorkloads() {
+    }
+
+    /**
+     * One tick of a part 1 Race, which moves its Horse objects one after another. A new race
+     * is set up whenever every horse has fallen.
+     */
+    public static Workload raceTick(int lanes) {
+        return new Workload() {
+            private final SplittableRandom random = new SplittableRandom(42);
+            private Race race = newRace();
+
+            private Race newRace() {
+                Race fresh = new Race(RACE_TRACK_LENGTH, random.nextLong());
+                for (int lane = 1; lane <= lanes; lane++) {
+                    fresh.enlistHorse(new Horse('H', "Horse " + lane, 0.1 + random.nextInt(10) / 10.0), lane);
+                }
+                return fresh;
+            }
+
+            @Override
+            public long run() {
+                if (race.advanceRace()) {
+                    race = newRace();
+                    return 1;
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * One tick of a part 1 RaceField holding the same kind of field in arrays.
+     */
+    public static Workload raceFieldTick(int lanes) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Horse> horses = new ArrayList<>();
+        for (int lane = 1; lane <= lanes; lane++) {
+            horses.add(new Horse('H', "Horse " + lane, 0.1 + random.nextInt(10) / 10.0));
+        }
+        RaceField field = new RaceField(RACE_TRACK_LENGTH, horses);
+        return () -> {
+            int state = field.tick(random);
+            if (state != RaceField.RUNNING) {
+                field.reset();
+            }
+            return state;
+        };
+    }
+
+    /**
+     * One RaceField.tickBulk with the scalar or the vector kernel, restarting the race every few
+     * ticks so most lanes are standing. Lanes share ten Horse objects, one per confidence, so
+     * ten million lanes fit in memory.
+     *
+     * @param vector whether to use the vector kernel, which needs part 1 built with -Pvector and
+     *               the JVM started with --add-modules jdk.incubator.vector
+     */
+    private static Workload raceFieldKernelTick(int lanes, boolean vector) {
+        RaceFieldKernel kernel = vector ? RaceFieldKernel.vector() : new ScalarRaceFieldKernel();
+        if (kernel == null) {
+            throw new IllegalStateException("The vector kernel is not available");
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        List<Horse> pool = new ArrayList<>();
+        for (int tenths = 1; tenths <= 10; tenths++) {
+            pool.add(new Horse('H', "Horse " + tenths, tenths / 10.0));
+        }
+        List<Horse> horses = new ArrayList<>(lanes);
+        for (int lane = 0; lane < lanes; lane++) {
+            horses.add(pool.get(random.nextInt(pool.size())));
+        }
+        RaceField field = new RaceField(RACE_TRACK_LENGTH, horses);
+        field.setKernel(kernel);
+        int[] ticks = {0};
+        return () -> {
+            int state = field.tickBulk(random);
+            if (state != RaceField.RUNNING || ++ticks[0] == KERNEL_TICKS_PER_RACE) {
+                field.reset();
+                ticks[0] = 0;
+            }
+            return state;
+        };
+    }
+
+    public static Workload raceFieldScalarKernelTick(int lanes) {
+        return raceFieldKernelTick(lanes, false);
+    }
+
+    public static Workload raceFieldVectorKernelTick(int lanes) {
+        return raceFieldKernelTick(lanes, true);
+    }
+
+    /**
+     * One CompetitionField.tickBulk with the scalar or the vector kernel, restarting the
+     * competition every few ticks. Lanes share a small pool of Equine objects.
+     *
+     * @param vector whether to use the vector kernel, which needs part 2 built with -Pvector and
+     *               the JVM started with --add-modules jdk.incubator.vector
+     */
+    private static Workload competitionFieldKernelTick(int lanes, boolean vector) {
+        CompetitionFieldKernel kernel = vector ? CompetitionFieldKernel.vector() : new ScalarCompetitionFieldKernel();
+        if (kernel == null) {
+            throw new IllegalStateException("The vector kernel is not available");
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        List<Equine> pool = createEquines(64, random);
+        List<Equine> equines = new ArrayList<>(lanes);
+        for (int lane = 0; lane < lanes; lane++) {
+            equines.add(pool.get(random.nextInt(pool.size())));
+        }
+        CompetitionField field = new CompetitionField(equines, COMPETITION_DISTANCE);
+        field.setKernel(kernel);
+        int[] ticks = {0};
+        return () -> {
+            int result = field.tickBulk(random);
+            if (result != CompetitionField.RUNNING || ++ticks[0] == KERNEL_TICKS_PER_RACE) {
+                field.reset();
+                ticks[0] = 0;
+            }
+            return result;
+        };
+    }
+
+    public static Workload competitionFieldScalarKernelTick(int lanes) {
+        return competitionFieldKernelTick(lanes, false);
+    }
+
+    public static Workload competitionFieldVectorKernelTick(int lanes) {
+        return competitionFieldKernelTick(lanes, true);
+    }
+
+    /**
+     * One call to Equine.compete for each equine in the field, restarting any that finished.
+     */
+    public static Workload equineCompete(int lanes) {
+        List<Equine> equines = createEquines(lanes, new SplittableRandom(42));
+        return () -> {
+            long finished = 0;
+            for (Equine equine : equines) {
+                equine.compete(COMPETITION_DISTANCE);
+                if (equine.getDistanceTraveled() >= COMPETITION_DISTANCE) {
+                    equine.resetForNewCompetition();
+                    finished++;
+                }
+            }
+            return finished;
+        };
+    }
+
+    /**
+     * One call to Equine.calculateVelocityWithGear for each equine in the field.
+     */
+    public static Workload velocityWithGear(int lanes) {
+        List<Equine> equines = createEquines(lanes, new SplittableRandom(42));
+        return () -> {
+            double total = 0;
+            for (Equine equine : equines) {
+                total += equine.calculateVelocityWithGear();
+            }
+            return Double.doubleToRawLongBits(total);
+        };
+    }
+
+    /**
+     * One round of betting: every bettor places a wager on a random equine, then all of them are
+     * settled one after another with Equestrian.settleWager. Bettors without a ledger keep their
+     * whole history, so they are replaced every so often to keep the heap from growing.
+     */
+    public static Workload settleWagers(int bettorCount) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Equine> field = createEquines(4, random);
+        for (Equine equine : field) {
+            equine.setQuotedOdds(3);
+        }
+        return new Workload() {
+            private final List<Equestrian> bettors = new ArrayList<>();
+            private int rounds;
+            private long raceId;
+
+            @Override
+            public long run() {
+                if (rounds++ % 1_024 == 0) {
+                    bettors.clear();
+                    for (int i = 0; i < bettorCount; i++) {
+                        bettors.add(new Equestrian(1e12));
+                    }
+                }
+                raceId++;
+                for (Equestrian bettor : bettors) {
+                    bettor.placeWager(raceId, field.get(random.nextInt(field.size())), 10);
+                }
+                Equine winner = field.get(random.nextInt(field.size()));
+                long settled = 0;
+                for (Equestrian bettor : bettors) {
+                    settled += bettor.settleWager(raceId, winner);
+                }
+                return settled;
+            }
+        };
+    }
+
+    /**
+     * One full drawRaceTrack of a mid-race frame onto an off-screen image. Needs
+     * java.awt.headless=true when there is no display.
+     */
+    public static Workload drawRaceTrack(int lanes) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Equine> field = createEquines(lanes, random);
+        for (Equine equine : field) {
+            for (int step = random.nextInt(15); step > 0; step--) {
+                equine.compete(COMPETITION_DISTANCE);
+            }
+        }
+        FrameExchanger frames = new FrameExchanger(lanes);
+        frames.getWriteFrame().capture(field, 1);
+        frames.publish();
+
+        RaceTrackPanel panel = new RaceTrackPanel(field, (int) COMPETITION_DISTANCE, frames);
+        panel.setSize(1200, panel.getPreferredSize().height);
+        BufferedImage image = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return () -> {
+            Graphics2D g = image.createGraphics();
+            try {
+                panel.drawRaceTrack(g);
+            } finally {
+                g.dispose();
+            }
+            return image.getRGB(0, 0);
+        };
+    }
+
+    private static List<Equine> createEquines(int count, SplittableRandom random) {
+        List<Equine> equines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Set<String> gear = new HashSet<>();
+            gear.add(GEAR[random.nextInt(GEAR.length)]);
+            equines.add(new Equine("Equine " + i, Equine.Species.ARABIAN, Color.GRAY,
+                    0.05 + random.nextDouble() * 0.95, gear, "🐎"));
+        }
+        return equines;
+    }
+}
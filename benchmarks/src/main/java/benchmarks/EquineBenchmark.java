@@ -0,0 +1,49 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost per equine of Equine.compete and Equine.calculateVelocityWithGear.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EquineBenchmark {
+    private static final int EQUINES = 1_000;
+
+    private Workload compete;
+    private Workload velocity;
+
+    @Setup
+    public void setUp() {
+        compete = Workloads.create("equineCompete", EQUINES);
+        velocity = Workloads.create("velocityWithGear", EQUINES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EQUINES)
+    public long compete() {
+        return compete.run();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EQUINES)
+    public long calculateVelocityWithGear() {
+        return velocity.run();
+    }
+}
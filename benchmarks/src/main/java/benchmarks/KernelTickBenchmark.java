@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of one tickBulk on RaceField and CompetitionField with the scalar and vector
+ * kernels. The vector workloads fail to set up unless the parts were built with mvn -Pvector.
+ * Divide the lane count by the time per tick for lanes per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+public class KernelTickBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    int lanes;
+
+    @Param({"raceFieldScalarKernelTick", "raceFieldVectorKernelTick",
+            "competitionFieldScalarKernelTick", "competitionFieldVectorKernelTick"})
+    String workload;
+
+    private Workload tick;
+
+    @Setup
+    public void setUp() {
+        tick = Workloads.create(workload, lanes);
+    }
+
+    @Benchmark
+    public long tick() {
+        return tick.run();
+    }
+}
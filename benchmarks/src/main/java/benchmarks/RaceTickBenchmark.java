@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of one part 1 race tick as the field grows, for Race with its list of Horse objects
+ * and for RaceField with its arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RaceTickBenchmark {
+    @Param({"10", "1000", "100000"})
+    int lanes;
+
+    @Param({"raceTick", "raceFieldTick"})
+    String workload;
+
+    private Workload tick;
+
+    @Setup
+    public void setUp() {
+        tick = Workloads.create(workload, lanes);
+    }
+
+    @Benchmark
+    public long tick() {
+        return tick.run();
+    }
+}
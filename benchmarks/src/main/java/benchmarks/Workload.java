@@ -0,0 +1,17 @@
+package benchmarks;
+
+/**
+ * One repeatable piece of work on the simulator core.
+ *
+ * The core lives in the unnamed package, which JMH does not accept for benchmark classes and
+ * which named packages cannot import. CoreWorkloads, in the unnamed package of this module, wraps
+ * the core behind this interface, and the benchmarks look it up by name through Workloads.
+ */
+public interface Workload {
+    /**
+     * Does the work once.
+     *
+     * @return a value derived from the work, for the benchmark to consume
+     */
+    long run();
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Creates workloads from the factory methods of CoreWorkloads.
+ */
+final class Workloads {
+    private Workloads() {
+    }
+
+    /**
+     * @param name the name of a static factory method on CoreWorkloads taking the size
+     * @param size the field size, bettor count or similar
+     * @return the workload, set up and ready to run
+     */
+    static Workload create(String name, int size) {
+        try {
+            return (Workload) Class.forName("CoreWorkloads").getMethod(name, int.class).invoke(null, size);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Could not set up workload " + name, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No workload named " + name, e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.function.Predicate;
+
+/**
+ * Writes each event it receives from an EventStream as a line of text.
+ *
+ * Events are requested a batch at a time, so a slow destination only slows this subscriber and
+ * never the race. Droppable events may be missing from the log when it falls behind; every
+ * other event is always there. The output is flushed after each event that ends a race.
+ *
+ * @param <E> the type of event
+ */
+public class EventLog<E> implements Flow.Subscriber<E> {
+    private static final int BATCH_SIZE = 256;
+
+    private final PrintWriter out;
+    private final Predicate<? super E> endsRace;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private Flow.Subscription subscription;
+    private int outstanding;
+
+    /**
+     * @param out      where to write the events, closed when the stream completes
+     * @param endsRace tells which events end a race, after which the output is flushed
+     */
+    public EventLog(Writer out, Predicate<? super E> endsRace) {
+        this.out = new PrintWriter(out);
+        this.endsRace = endsRace;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        outstanding = BATCH_SIZE;
+        subscription.request(BATCH_SIZE);
+    }
+
+    @Override
+    public void onNext(E event) {
+        out.println(event);
+        if (endsRace.test(event)) {
+            out.flush();
+        }
+        if (--outstanding == 0) {
+            outstanding = BATCH_SIZE;
+            subscription.request(BATCH_SIZE);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        out.println("Events failed: " + throwable);
+        finish();
+    }
+
+    @Override
+    public void onComplete() {
+        finish();
+    }
+
+    /**
+     * Blocks until the stream has completed and the log is closed.
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    private void finish() {
+        out.close();
+        closed.countDown();
+    }
+}
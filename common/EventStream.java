@@ -0,0 +1,75 @@
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Hands the events of a race to any number of subscribers, each with its own bounded buffer.
+ * Part 1 streams its RaceEvents through it and part 2 its CompetitionEvents.
+ *
+ * The race thread never waits for a subscriber that has fallen behind on droppable events, such
+ * as moves: one that does not fit in a full buffer is dropped for that subscriber alone, as the
+ * next move supersedes it. Every other event is never dropped; publishing one waits for room
+ * instead. Events are delivered on the common fork/join pool, so a slow subscriber only holds up
+ * its own buffer.
+ *
+ * @param <E> the type of event
+ */
+public class EventStream<E> implements Flow.Publisher<E>, AutoCloseable {
+    private static final int BUFFER_SIZE = 1_024;
+
+    private final SubmissionPublisher<E> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), BUFFER_SIZE);
+    private final Predicate<? super E> droppable;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param droppable tells which events a subscriber that has fallen behind may miss
+     */
+    public EventStream(Predicate<? super E> droppable) {
+        this.droppable = droppable;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super E> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * @return whether anyone is listening, so a race can skip making events when no one is
+     */
+    public boolean hasSubscribers() {
+        return publisher.hasSubscribers();
+    }
+
+    /**
+     * Passes an event to every subscriber.
+     *
+     * @param event the event, which must not be published after the stream is closed
+     */
+    public void publish(E event) {
+        if (droppable.test(event)) {
+            publisher.offer(event, (subscriber, missed) -> {
+                dropped.increment();
+                return false;
+            });
+        } else {
+            publisher.submit(event);
+        }
+    }
+
+    /**
+     * @return how many events were dropped for subscribers that had fallen behind
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Completes every subscriber once it has taken the events already published.
+     */
+    @Override
+    public void close() {
+        publisher.close();
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Seeds for the races of a batch, so every race draws from its own random stream and any one
+ * of them can be replayed on its own from the master seed and its index.
+ */
+public final class RaceSeeds {
+    private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private RaceSeeds() {
+    }
+
+    /**
+     * SplittableRandom steps its state by the same gamma on every draw, so seeds one gamma apart
+     * give streams that are the same numbers shifted by one. The seed is mixed with the
+     * SplitMix64 finaliser so neighbouring races do not share draws.
+     *
+     * @return the seed of the race with the given index in a batch started from masterSeed
+     */
+    public static long raceSeed(long masterSeed, long raceIndex) {
+        long z = masterSeed + raceIndex * SEED_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Drives a race at a fixed number of simulation ticks per second, independently of how
+ * often it is drawn. Part 1's terminal race and part 2's competitions both run on it.
+ *
+ * Ticks run on a thread of their own at a fixed rate, so a late tick is made up straight away
+ * and race time never stretches, however long a frame takes to draw. Frames run on a second
+ * thread with a fixed delay, so when drawing falls behind, frames are dropped rather than
+ * queued. A frame may therefore be drawn while a tick runs, and must only read state the ticks
+ * publish safely. The final frame and the finish callback run on the frame thread once the
+ * last tick is done. In turbo mode ticks run back to back as fast as the CPU allows and only
+ * the final state is drawn.
+ *
+ * No method blocks its caller except awaitFinish, so the scheduler can be driven from the
+ * Swing event thread.
+ */
+public class TickScheduler {
+    private final long tickMillis;
+    private final long frameMillis;
+    private final ScheduledExecutorService ticker;
+    private final ScheduledExecutorService drawer;
+    private final CountDownLatch finishedLatch = new CountDownLatch(1);
+
+    private BooleanSupplier tick;
+    private Runnable render;
+    private Runnable onFinish;
+    private ScheduledFuture<?> tickTask;
+    private ScheduledFuture<?> renderTask;
+    private volatile boolean finished;
+    private volatile boolean stopped;
+
+    /**
+     * @param name        the prefix of the tick and frame thread names
+     * @param tickMillis  the simulated time between two ticks
+     * @param frameMillis the time between two frames
+     */
+    public TickScheduler(String name, long tickMillis, long frameMillis) {
+        if (tickMillis <= 0 || frameMillis <= 0) {
+            throw new IllegalArgumentException("Tick and frame intervals must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.frameMillis = frameMillis;
+        this.ticker = newThread(name + "-ticks");
+        this.drawer = newThread(name + "-frames");
+    }
+
+    private static ScheduledExecutorService newThread(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts running the race.
+     *
+     * @param tick     advances the race by one tick and returns true once it is over
+     * @param render   draws the current state
+     * @param onFinish called once after the final frame has been drawn
+     * @param turbo    whether to skip straight to the end
+     */
+    public void start(BooleanSupplier tick, Runnable render, Runnable onFinish, boolean turbo) {
+        this.tick = tick;
+        this.render = render;
+        this.onFinish = onFinish;
+        if (turbo) {
+            ticker.execute(this::runToEnd);
+        } else {
+            tickTask = ticker.scheduleAtFixedRate(this::runTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+            renderTask = drawer.scheduleWithFixedDelay(this::runRender, 0, frameMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Switches a running race to turbo mode: the remaining ticks run without pause and
+     * only the result is drawn. Does nothing once the race has finished or been stopped.
+     */
+    public void fastForward() {
+        try {
+            ticker.execute(this::runToEnd);
+        } catch (RejectedExecutionException e) {
+            // The last tick has already run.
+        }
+    }
+
+    /**
+     * Abandons the race without drawing or reporting a result.
+     */
+    public void stop() {
+        stop(null);
+    }
+
+    /**
+     * Abandons the race without drawing or reporting a result, and returns straight away. A
+     * tick or frame that is already running is left to complete; afterLastTick runs once it
+     * has, so it can release whatever the ticks were using without racing them.
+     *
+     * @param afterLastTick run after the last tick and frame, may be null
+     */
+    public void stop(Runnable afterLastTick) {
+        stopped = true;
+        cancelPeriodicTasks();
+        finishedLatch.countDown();
+        Runnable release = () -> {
+            try {
+                if (afterLastTick != null) {
+                    afterLastTick.run();
+                }
+            } finally {
+                drawer.shutdown();
+            }
+        };
+        // Queued behind any tick, then behind any frame that tick handed over.
+        try {
+            ticker.execute(() -> {
+                ticker.shutdown();
+                runOnDrawer(release);
+            });
+        } catch (RejectedExecutionException e) {
+            runOnDrawer(release);
+        }
+    }
+
+    /**
+     * Blocks until the race has finished or been stopped.
+     */
+    public void awaitFinish() throws InterruptedException {
+        finishedLatch.await();
+    }
+
+    private void runTick() {
+        if (!finished && !stopped && tick.getAsBoolean()) {
+            finish();
+        }
+    }
+
+    private void runRender() {
+        if (!finished && !stopped) {
+            render.run();
+        }
+    }
+
+    private void runToEnd() {
+        cancelPeriodicTasks();
+        while (!finished && !stopped && !Thread.currentThread().isInterrupted()) {
+            runTick();
+        }
+    }
+
+    /**
+     * Runs on the tick thread after the last tick. The final frame is handed to the frame
+     * thread before the tick thread shuts down, so stop always queues behind it.
+     */
+    private void finish() {
+        finished = true;
+        cancelPeriodicTasks();
+        runOnDrawer(() -> {
+            try {
+                if (!stopped) {
+                    render.run();
+                    onFinish.run();
+                }
+            } finally {
+                drawer.shutdown();
+                finishedLatch.countDown();
+            }
+        });
+        ticker.shutdown();
+    }
+
+    /**
+     * Runs the task on the frame thread, or straight away if that thread has finished its work.
+     */
+    private void runOnDrawer(Runnable task) {
+        try {
+            drawer.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private void cancelPeriodicTasks() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+        }
+        if (renderTask != null) {
+            renderTask.cancel(false);
+        }
+    }
+}
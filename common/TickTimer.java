@@ -0,0 +1,30 @@
+/**
+ * Times a race tick for the hand-run field benchmarks of both parts, which sweep field sizes
+ * the JMH suite in the benchmarks module does not.
+ */
+public final class TickTimer {
+    private static final int TICKS_PER_READING = 10;
+
+    private TickTimer() {
+    }
+
+    /**
+     * Repeats the tick for roughly the given time. The clock is read once every few ticks, so
+     * timing a small field does not mostly measure System.nanoTime.
+     *
+     * @return the average nanoseconds per tick
+     */
+    public static double runFor(long nanos, Runnable tick) {
+        long ticks = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < TICKS_PER_READING; i++) {
+                tick.run();
+            }
+            ticks += TICKS_PER_READING;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return (double) elapsed / ticks;
+    }
+}
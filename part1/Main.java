@@ -1,14 +1,29 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
         Scanner scanner = new Scanner(System.in);
+        Long seed = null;
+        boolean turbo = false;
+        String logPath = null;
+        for (String arg : args) {
+            if (arg.equals("--turbo")) {
+                turbo = true;
+            } else if (arg.startsWith("--log=")) {
+                logPath = arg.substring("--log=".length());
+            } else {
+                seed = Long.parseLong(arg);
+            }
+        }
 
         System.out.print("Enter the track length: ");
         int trackLength = scanner.nextInt();
         scanner.nextLine(); 
 
-        Race race = new Race(trackLength);
+        Race race = seed != null ? new Race(trackLength, seed) : new Race(trackLength);
 
         for (int i = 1; i <= 3; i++) {
             System.out.println("Enter details for Horse " + i + ":");
@@ -24,7 +39,18 @@ public class Main {
             race.enlistHorse(horse, i);
         }
 
+        EventLog<RaceEvent> log = null;
+        if (logPath != null) {
+            log = new EventLog<>(Files.newBufferedWriter(Paths.get(logPath)), event -> event.getType() == RaceEvent.Type.ENDED);
+            race.subscribe(log);
+        }
+
         System.out.println("Starting the race...");
-        race.commenceRace();
+        race.commenceRace(turbo);
+        race.close();
+        if (log != null) {
+            log.awaitClose();
+        }
+        System.out.println("Race seed: " + race.getSeed() + " (run again with java Main " + race.getSeed() + " to replay)");
     }
 }
\ No newline at end of file
@@ -1,14 +1,61 @@
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.Flow;
+
+/**
+ * A race between horses on a track of fixed length.
+ *
+ * Anyone interested in how the race unfolds subscribes to it and receives a RaceEvent for every
+ * move, fall and finish, and one when the race ends. Events are only made while someone is
+ * subscribed, so an unobserved race runs at full speed.
+ */
+public class Race implements Flow.Publisher<RaceEvent>, AutoCloseable {
+    private static final long TICK_MILLIS = 200;
+    private static final long FRAME_MILLIS = 100;
 
-public class Race {
     private int trackLength;
     private List<Horse> participants;
+    private final long seed;
+    private final SplittableRandom random;
+    private TerminalRenderer renderer;
+    private final EventStream<RaceEvent> events = new EventStream<>(event -> event.getType() == RaceEvent.Type.MOVED);
+    private final Object horsesLock = new Object();
+    private long tick;
+    private int fallenHorses;
+    private boolean horseFinished;
+    private boolean publishing;
 
     public Race(int distance) {
+        this(distance, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates a race whose random draws all come from the given seed, so running it again
+     * with the same seed and horses replays it exactly.
+     */
+    public Race(int distance, long seed) {
         trackLength = distance;
         participants = new ArrayList<>();
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RaceEvent> subscriber) {
+        events.subscribe(subscriber);
+    }
+
+    /**
+     * Ends the event stream; subscribers complete once they have taken the events already sent.
+     */
+    @Override
+    public void close() {
+        events.close();
     }
 
     public void enlistHorse(Horse theHorse, int laneNumber) {
@@ -20,65 +67,129 @@ public class Race {
     }
 
     public void commenceRace() {
-        boolean raceEnded = false;
-    
-        for (Horse horse : participants) {
-            horse.goBackToStart();
+        commenceRace(false);
+    }
+
+    /**
+     * Runs the race on the terminal, with ticks at a fixed rate and the track redrawn at its
+     * own frame rate on a thread of its own. In turbo mode the race runs as fast as possible
+     * and only the final state is drawn.
+     */
+    public void commenceRace(boolean turbo) {
+        startRace();
+        renderer = new TerminalRenderer(trackLength);
+
+        TickScheduler scheduler = new TickScheduler("race", TICK_MILLIS, FRAME_MILLIS);
+        scheduler.start(this::advanceRace, this::displayRaceProgress, this::announceResult, turbo);
+        try {
+            scheduler.awaitFinish();
+        } catch (InterruptedException e) {
+            scheduler.stop();
+            Thread.currentThread().interrupt();
         }
-    
-        while (!raceEnded) {
+    }
+
+    /**
+     * Runs the race to the end without drawing the track or pausing between ticks.
+     *
+     * @return the horses that crossed the line, empty if every horse fell
+     */
+    public List<Horse> runSilently() {
+        startRace();
+
+        while (!advanceRace()) {
+            // keep going until the race is decided
+        }
+
+        List<Horse> winners = new ArrayList<>();
+        if (!allHorsesDown()) {
             for (Horse horse : participants) {
-                moveHorseForward(horse);
-            }
-    
-            displayRaceProgress();
-    
-            if (allHorsesDown()) {
-                System.out.println("All horses have fallen. The contest concludes.");
-                raceEnded = true;
-            } else if (anyHorseVictorious()) {
-                for (Horse horse : participants) {
-                    if (horseWins(horse)) {
-                        System.out.println("The winning horse is " + horse.getName());
-                    }
+                if (horseWins(horse)) {
+                    winners.add(horse);
                 }
-                raceEnded = true;
             }
-    
-            try {
-                TimeUnit.MILLISECONDS.sleep(200);
-            } catch (Exception e) {
-                // Handle the exception
+        }
+        return winners;
+    }
+
+    /**
+     * Moves every horse once. Package-private so benchmarks can time a single tick.
+     *
+     * @return true once a horse has won or every horse has fallen
+     */
+    boolean advanceRace() {
+        tick++;
+        publishing = events.hasSubscribers();
+        synchronized (horsesLock) {
+            for (int lane = 0; lane < participants.size(); lane++) {
+                moveHorseForward(participants.get(lane), lane + 1);
             }
         }
+        boolean over = allHorsesDown() || horseFinished;
+        if (over && publishing) {
+            events.publish(RaceEvent.ended(tick));
+        }
+        return over;
     }
 
-    private boolean allHorsesDown() {
+    /**
+     * A horse that fell in an earlier race stays down, so it counts as fallen from the start;
+     * otherwise a rerun in which every horse had fallen would never end.
+     */
+    private void startRace() {
+        tick = 0;
+        fallenHorses = 0;
+        horseFinished = false;
         for (Horse horse : participants) {
-            if (!horse.hasFallen()) {
-                return false;
+            horse.goBackToStart();
+            if (horse.hasFallen()) {
+                fallenHorses++;
             }
         }
-        return true;
     }
 
-    private boolean anyHorseVictorious() {
-        for (Horse horse : participants) {
-            if (horseWins(horse)) {
-                return true;
+    private void announceResult() {
+        if (allHorsesDown()) {
+            System.out.println("All horses have fallen. The contest concludes.");
+        } else {
+            for (Horse horse : participants) {
+                if (horseWins(horse)) {
+                    System.out.println("The winning horse is " + horse.getName());
+                }
             }
         }
-        return false;
     }
-    private void moveHorseForward(Horse horse) {
+
+    /**
+     * Falls and finishes are counted as they happen, so deciding whether the race is over does
+     * not look at every horse again.
+     */
+    private boolean allHorsesDown() {
+        return fallenHorses == participants.size();
+    }
+
+    private void moveHorseForward(Horse horse, int lane) {
         if (!horse.hasFallen()) {
-            if (Math.random() < horse.getConfidence()) {
+            if (random.nextDouble() < horse.getConfidence()) {
                 horse.moveForward();
                 adjustHorsePerformance(horse, false);
+                if (publishing) {
+                    events.publish(new RaceEvent(RaceEvent.Type.MOVED, tick, lane, horse, horse.getDistanceTravelled()));
+                }
+                if (horseWins(horse)) {
+                    horseFinished = true;
+                    if (publishing) {
+                        events.publish(new RaceEvent(RaceEvent.Type.FINISHED, tick, lane, horse, horse.getDistanceTravelled()));
+                    }
+                }
             }
 
-            if (Math.random() < (0.1 * horse.getConfidence() * horse.getConfidence())) {
+            if (random.nextDouble() < (0.1 * horse.getConfidence() * horse.getConfidence())) {
                 horse.fall();
+                fallenHorses++;
+                if (publishing) {
+                    events.publish(new RaceEvent(RaceEvent.Type.FELL, tick, lane, horse, horse.getDistanceTravelled()));
+                }
             }
         }
     }
@@ -86,51 +197,16 @@ public class Race {
     private boolean horseWins(Horse horse) {
         return horse.getDistanceTravelled() == trackLength;
     }
-    private void displayRaceProgress() {
-        StringBuilder raceDisplay = new StringBuilder();
-
-        raceDisplay.append("\033[2J");
-
-        raceDisplay.append("\033[H");
-    
-        raceDisplay.append(String.format("%0" + (trackLength + 3) + "d", 0).replace("0", "="));
-        raceDisplay.append(System.lineSeparator());
 
-        for (Horse horse : participants) {
-            raceDisplay.append("|");
-            int spacesBefore = horse.getDistanceTravelled();
-            int spacesAfter = trackLength - horse.getDistanceTravelled();
-    
-            for (int i = 0; i < spacesBefore; i++) {
-                raceDisplay.append(" ");
-            }
-    
-            if (horse.hasFallen()) {
-                raceDisplay.append("❌");
-            } else {
-                raceDisplay.append(horse.getSymbol());
-            }
-    
-            for (int i = 0; i < spacesAfter; i++) {
-                raceDisplay.append(" ");
-            }
-    
-            raceDisplay.append("| ");
-    
-            if (horse.hasFallen()) {
-                raceDisplay.append(horse.getName()).append(" (Horse has stumbled)");
-            } else {
-                raceDisplay.append(horse.getName()).append(" (Confidence: ")
-                        .append(String.format("%.2f", horse.getConfidence())).append(")");
-            }
-    
-            raceDisplay.append(System.lineSeparator());
+    /**
+     * Runs on the frame thread. The horses are only held still while the frame is worked out,
+     * not while it is written, so a slow terminal never holds up a tick.
+     */
+    private void displayRaceProgress() {
+        synchronized (horsesLock) {
+            renderer.compose(participants);
         }
-    
-        raceDisplay.append(String.format("%0" + (trackLength + 3) + "d", 0).replace("0", "="));
-        raceDisplay.append(System.lineSeparator());
-
-        System.out.print(raceDisplay.toString());
+        renderer.flush();
     }
 
     private void adjustHorsePerformance(Horse horse, boolean wins) {
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many independent races with no rendering and no sleeping, spread over every core,
+ * and reports how often each horse won and fell.
+ *
+ * The race setup is read from a file instead of the prompts in Main:
+ * <pre>
+ * # track length on the first line, then one horse per line
+ * 20
+ * S,Shadowfax,0.9
+ * B,Brego,0.7
+ * </pre>
+ *
+ * Every race draws from its own random stream, seeded from a master seed and the race's
+ * index, so workers never share a generator and any race in a batch can be replayed on its
+ * own with new Race(trackLength, RaceSeeds.raceSeed(masterSeed, index)).
+ *
+ * Usage: java RaceBatchRunner setup.txt [races] [threads] [master seed]
+ */
+public class RaceBatchRunner {
+    private final int trackLength;
+    private final List<Character> symbols = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Double> confidences = new ArrayList<>();
+
+    public RaceBatchRunner(int trackLength) {
+        if (trackLength <= 0) {
+            throw new IllegalArgumentException("Track length must be positive.");
+        }
+        this.trackLength = trackLength;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java RaceBatchRunner <setup file> [races] [threads] [master seed]");
+            return;
+        }
+        int races = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long masterSeed = args.length > 3 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+
+        RaceBatchRunner runner = fromFile(Paths.get(args[0]));
+        long start = System.nanoTime();
+        BatchResult result = runner.run(races, threads, masterSeed);
+        long elapsed = System.nanoTime() - start;
+
+        result.print(runner);
+        System.out.printf("%d races on %d threads in %.1f ms (%.0f races/s)%n",
+                races, threads, elapsed / 1e6, races / (elapsed / 1e9));
+        System.out.println("Master seed: " + masterSeed);
+    }
+
+    /**
+     * Reads a race setup file: the track length, then one "symbol,name,confidence" line per horse.
+     * Blank lines and lines starting with '#' are ignored.
+     */
+    public static RaceBatchRunner fromFile(Path setupFile) throws IOException {
+        RaceBatchRunner runner = null;
+        for (String line : Files.readAllLines(setupFile)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (runner == null) {
+                runner = new RaceBatchRunner(Integer.parseInt(line));
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length != 3 || parts[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Expected symbol,name,confidence but got: " + line);
+            }
+            runner.addHorse(parts[0].trim().charAt(0), parts[1].trim(), Double.parseDouble(parts[2].trim()));
+        }
+        if (runner == null || runner.names.isEmpty()) {
+            throw new IllegalArgumentException("Setup file needs a track length and at least one horse.");
+        }
+        return runner;
+    }
+
+    public void addHorse(char symbol, String name, double confidence) {
+        // A horse that never moves can never fall either, so the race would never end.
+        if (new Horse(symbol, name, confidence).getConfidence() == 0.0) {
+            throw new IllegalArgumentException("Horse " + name + " has no confidence and would never finish.");
+        }
+        symbols.add(symbol);
+        names.add(name);
+        confidences.add(confidence);
+    }
+
+    public int getFieldSize() {
+        return names.size();
+    }
+
+    public String getName(int lane) {
+        return names.get(lane);
+    }
+
+    public double getConfidence(int lane) {
+        return confidences.get(lane);
+    }
+
+    public int getTrackLength() {
+        return trackLength;
+    }
+
+    /**
+     * Runs the given number of races split evenly over a fixed pool of threads.
+     * Each worker counts into its own arrays, which are added up once all workers finish.
+     * The totals only depend on the master seed, not on the number of threads.
+     */
+    public BatchResult run(int races, int threads, long masterSeed) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BatchResult>> parts = new ArrayList<>();
+            int first = 0;
+            for (int t = 0; t < threads; t++) {
+                int from = first;
+                int to = from + races / threads + (t < races % threads ? 1 : 0);
+                parts.add(pool.submit(() -> runShare(from, to, masterSeed)));
+                first = to;
+            }
+            BatchResult total = new BatchResult(getFieldSize());
+            for (Future<BatchResult> part : parts) {
+                total.add(part.get());
+            }
+            return total;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch race failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private BatchResult runShare(int from, int to, long masterSeed) {
+        BatchResult result = new BatchResult(getFieldSize());
+        Horse[] horses = new Horse[getFieldSize()];
+        for (int r = from; r < to; r++) {
+            Race race = new Race(trackLength, RaceSeeds.raceSeed(masterSeed, r));
+            for (int i = 0; i < horses.length; i++) {
+                horses[i] = new Horse(symbols.get(i), names.get(i), confidences.get(i));
+                race.enlistHorse(horses[i], i + 1);
+            }
+            result.record(horses, race.runSilently());
+        }
+        return result;
+    }
+
+    /**
+     * Win and fall counts for every horse across a batch of races.
+     */
+    public static class BatchResult {
+        private final long[] wins;
+        private final long[] falls;
+        private long races;
+        private long allFallen;
+        private long ties;
+
+        BatchResult(int fieldSize) {
+            wins = new long[fieldSize];
+            falls = new long[fieldSize];
+        }
+
+        void record(Horse[] horses, List<Horse> winners) {
+            races++;
+            if (winners.isEmpty()) {
+                allFallen++;
+            } else if (winners.size() > 1) {
+                ties++;
+            }
+            for (int i = 0; i < horses.length; i++) {
+                if (winners.contains(horses[i])) {
+                    wins[i]++;
+                }
+                if (horses[i].hasFallen()) {
+                    falls[i]++;
+                }
+            }
+        }
+
+        void add(BatchResult other) {
+            for (int i = 0; i < wins.length; i++) {
+                wins[i] += other.wins[i];
+                falls[i] += other.falls[i];
+            }
+            races += other.races;
+            allFallen += other.allFallen;
+            ties += other.ties;
+        }
+
+        public long getWins(int lane) {
+            return wins[lane];
+        }
+
+        public long getFalls(int lane) {
+            return falls[lane];
+        }
+
+        public long getRaces() {
+            return races;
+        }
+
+        public long getAllFallen() {
+            return allFallen;
+        }
+
+        public long getTies() {
+            return ties;
+        }
+
+        public void print(RaceBatchRunner runner) {
+            System.out.printf("%-20s %10s %8s %10s %8s%n", "Horse", "Wins", "Win %", "Falls", "Fall %");
+            for (int i = 0; i < wins.length; i++) {
+                System.out.printf("%-20s %10d %7.2f%% %10d %7.2f%%%n", runner.getName(i),
+                        wins[i], 100.0 * wins[i] / races, falls[i], 100.0 * falls[i] / races);
+            }
+            System.out.printf("All horses fell in %d races, %d races ended in a tie.%n", allFallen, ties);
+        }
+    }
+}
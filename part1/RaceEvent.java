@@ -0,0 +1,68 @@
+/**
+ * Something that happened during a race: a horse moved, fell or crossed the line, or the race
+ * ended. The distance is copied when the event is made, so it stays right while the race runs on.
+ */
+public class RaceEvent {
+    /**
+     * What happened.
+     */
+    public enum Type { MOVED, FELL, FINISHED, ENDED }
+
+    private final Type type;
+    private final long tick;
+    private final int lane;
+    private final Horse horse;
+    private final int distance;
+
+    /**
+     * @param type     what happened
+     * @param tick     the tick it happened in, counting from 1
+     * @param lane     the horse's lane, counting from 1
+     * @param horse    the horse it happened to
+     * @param distance how far the horse had run
+     */
+    public RaceEvent(Type type, long tick, int lane, Horse horse, int distance) {
+        this.type = type;
+        this.tick = tick;
+        this.lane = lane;
+        this.horse = horse;
+        this.distance = distance;
+    }
+
+    /**
+     * @param tick the last tick of the race
+     * @return the event ending a race, which has no lane or horse
+     */
+    public static RaceEvent ended(long tick) {
+        return new RaceEvent(Type.ENDED, tick, 0, null, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    public Horse getHorse() {
+        return horse;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        if (type == Type.ENDED) {
+            return "tick " + tick + ": race ended";
+        }
+        String action = type == Type.MOVED ? " moved to " : type == Type.FELL ? " fell at " : " finished at ";
+        return "tick " + tick + ": lane " + lane + " " + horse.getName() + action + distance;
+    }
+}
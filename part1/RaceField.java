@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Race state for a whole field kept in primitive arrays indexed by lane, for fields far too
+ * large for a List of Horse objects. The rules are the same as Race.moveHorseForward.
+ *
+ * Confidence is stored in tenths, which is all Horse.getConfidence() ever exposes, so a tick
+ * needs no rounding: moving costs 0.01 confidence, which rounds back to the same tenth, and a
+ * fall costs exactly one tenth.
+ *
+ * tick draws from the generator it is given, one lane after another. tickBulk hands the whole
+ * field to a RaceFieldKernel, which makes the draws itself from one seed per tick, so lanes can
+ * be handled in SIMD batches; see RaceFieldKernel for how the draws are made.
+ */
+public class RaceField {
+    public static final int RUNNING = 0;
+    public static final int FINISHED = 1;
+    public static final int ALL_FALLEN = 2;
+
+    private static final double[] MOVE_CHANCE = new double[11];
+    private static final double[] FALL_CHANCE = new double[11];
+    private static final RaceFieldKernel DEFAULT_KERNEL = RaceFieldKernel.best();
+
+    static {
+        for (int tenths = 0; tenths <= 10; tenths++) {
+            double confidence = tenths / 10.0;
+            MOVE_CHANCE[tenths] = confidence;
+            FALL_CHANCE[tenths] = 0.1 * confidence * confidence;
+        }
+    }
+
+    // Package-private for the kernels.
+    final int trackLength;
+    private final int size;
+    private final char[] symbols;
+    private final String[] names;
+    private final int[] startingConfidence;
+    final int[] confidence;
+    final int[] distance;
+    final boolean[] fallen;
+    /** MOVE_CHANCE and FALL_CHANCE for each standing lane's confidence, as RaceFieldKernel thresholds. */
+    final int[] moveThreshold;
+    final int[] fallThreshold;
+    int standing;
+    int finishers;
+    private RaceFieldKernel kernel = DEFAULT_KERNEL;
+
+    public RaceField(int trackLength, List<Horse> horses) {
+        this.trackLength = trackLength;
+        this.size = horses.size();
+        symbols = new char[size];
+        names = new String[size];
+        startingConfidence = new int[size];
+        confidence = new int[size];
+        distance = new int[size];
+        fallen = new boolean[size];
+        moveThreshold = new int[size];
+        fallThreshold = new int[size];
+        for (int lane = 0; lane < size; lane++) {
+            Horse horse = horses.get(lane);
+            symbols[lane] = horse.getSymbol();
+            names[lane] = horse.getName();
+            startingConfidence[lane] = (int) Math.round(horse.getConfidence() * 10);
+        }
+        reset();
+    }
+
+    /**
+     * Puts every horse back at the start, on its feet and with its starting confidence.
+     */
+    public void reset() {
+        for (int lane = 0; lane < size; lane++) {
+            setConfidenceTenths(lane, startingConfidence[lane]);
+        }
+        Arrays.fill(distance, 0);
+        Arrays.fill(fallen, false);
+        standing = size;
+        finishers = 0;
+    }
+
+    /**
+     * Moves every lane forward once.
+     *
+     * @return RUNNING, FINISHED if at least one horse reached the line, or ALL_FALLEN
+     */
+    public int tick(RandomGenerator random) {
+        int[] confidence = this.confidence;
+        int[] distance = this.distance;
+        boolean[] fallen = this.fallen;
+        for (int lane = 0; lane < size; lane++) {
+            if (fallen[lane]) {
+                continue;
+            }
+            int tenths = confidence[lane];
+            if (random.nextDouble() < MOVE_CHANCE[tenths]) {
+                if (++distance[lane] == trackLength) {
+                    finishers++;
+                }
+            }
+            if (random.nextDouble() < FALL_CHANCE[tenths]) {
+                fallen[lane] = true;
+                confidence[lane] = Math.max(tenths - 1, 0);
+                standing--;
+            }
+        }
+        if (standing == 0) {
+            return ALL_FALLEN;
+        }
+        return finishers > 0 ? FINISHED : RUNNING;
+    }
+
+    /**
+     * Moves every lane forward once using the kernel, drawing only the tick's seed from the
+     * generator. The chances are the same as tick, but the draws are not, so the same generator
+     * gives a different race.
+     *
+     * @return RUNNING, FINISHED if at least one horse reached the line, or ALL_FALLEN
+     */
+    public int tickBulk(RandomGenerator random) {
+        kernel.tick(this, random.nextInt());
+        if (standing == 0) {
+            return ALL_FALLEN;
+        }
+        return finishers > 0 ? FINISHED : RUNNING;
+    }
+
+    /**
+     * Runs ticks until the race is decided.
+     *
+     * @return FINISHED or ALL_FALLEN
+     */
+    public int run(RandomGenerator random) {
+        int status;
+        do {
+            status = tick(random);
+        } while (status == RUNNING);
+        return status;
+    }
+
+    /**
+     * @param kernel the kernel tickBulk uses; the vector kernel is used by default when it is available
+     */
+    void setKernel(RaceFieldKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    RaceFieldKernel getKernel() {
+        return kernel;
+    }
+
+    private void setConfidenceTenths(int lane, int tenths) {
+        confidence[lane] = tenths;
+        moveThreshold[lane] = RaceFieldKernel.threshold(MOVE_CHANCE[tenths]);
+        fallThreshold[lane] = RaceFieldKernel.threshold(FALL_CHANCE[tenths]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDistanceTravelled(int lane) {
+        return distance[lane];
+    }
+
+    public boolean hasFallen(int lane) {
+        return fallen[lane];
+    }
+
+    public double getConfidence(int lane) {
+        return confidence[lane] / 10.0;
+    }
+
+    public boolean isWinner(int lane) {
+        return distance[lane] == trackLength;
+    }
+
+    /**
+     * @return a Horse whose state is read from and written to this field's arrays
+     */
+    public Horse getHorse(int lane) {
+        return new LaneHorse(this, lane);
+    }
+
+    /**
+     * A Horse that holds no state of its own: every call goes to one lane of a RaceField.
+     */
+    private static class LaneHorse extends Horse {
+        private final RaceField field;
+        private final int lane;
+
+        LaneHorse(RaceField field, int lane) {
+            super(field.symbols[lane], field.names[lane], field.confidence[lane] / 10.0);
+            this.field = field;
+            this.lane = lane;
+        }
+
+        @Override
+        public double getConfidence() {
+            return field.getConfidence(lane);
+        }
+
+        @Override
+        public int getDistanceTravelled() {
+            return field.distance[lane];
+        }
+
+        @Override
+        public boolean hasFallen() {
+            return field.fallen[lane];
+        }
+
+        @Override
+        public void goBackToStart() {
+            if (field.isWinner(lane)) {
+                field.finishers--;
+            }
+            field.distance[lane] = 0;
+        }
+
+        @Override
+        public void moveForward() {
+            if (++field.distance[lane] == field.trackLength) {
+                field.finishers++;
+            }
+        }
+
+        @Override
+        public void setConfidence(double newConfidence) {
+            // Horse's constructor calls this before the view is wired to its field.
+            if (field == null) {
+                super.setConfidence(newConfidence);
+                return;
+            }
+            field.setConfidenceTenths(lane, (int) Math.round(Math.max(0.0, Math.min(1.0, newConfidence)) * 10));
+        }
+
+        @Override
+        public void fall() {
+            if (!field.fallen[lane]) {
+                field.fallen[lane] = true;
+                field.standing--;
+            }
+            field.setConfidenceTenths(lane, Math.max(field.confidence[lane] - 1, 0));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the cost of one RaceField tick as the field grows, next to the same tick done
+ * through a List of Horse objects the way Race does it.
+ *
+ * Usage: java RaceFieldBenchmark [largest field size]
+ */
+public class RaceFieldBenchmark {
+    private static final int TRACK_LENGTH = 1_000_000;
+    private static final long TARGET_NANOS = 500_000_000L;
+
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%10s %14s %12s %14s %12s%n", "Lanes", "Field ns/tick", "ns/lane", "Horse ns/tick", "ns/lane");
+        for (int lanes = 10; lanes <= largest; lanes *= 10) {
+            List<Horse> horses = new ArrayList<>();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < lanes; i++) {
+                horses.add(new Horse('H', "Horse " + i, 0.1 + random.nextInt(10) / 10.0));
+            }
+            double fieldNanos = timeField(new RaceField(TRACK_LENGTH, horses));
+            double horseNanos = timeHorses(horses);
+            System.out.printf("%10d %14.0f %12.2f %14.0f %12.2f%n",
+                    lanes, fieldNanos, fieldNanos / lanes, horseNanos, horseNanos / lanes);
+        }
+    }
+
+    private static double timeField(RaceField field) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Warm up before timing, restarting whenever the race is decided.
+        TickTimer.runFor(TARGET_NANOS / 5, () -> {
+            if (field.tick(random) != RaceField.RUNNING) {
+                field.reset();
+            }
+        });
+        field.reset();
+        return TickTimer.runFor(TARGET_NANOS, () -> {
+            if (field.tick(random) != RaceField.RUNNING) {
+                field.reset();
+            }
+        });
+    }
+
+    private static double timeHorses(List<Horse> template) {
+        List<Horse> horses = new ArrayList<>();
+        for (Horse horse : template) {
+            horses.add(new Horse(horse.getSymbol(), horse.getName(), horse.getConfidence()));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Runnable tick = () -> {
+            boolean allDown = true;
+            for (Horse horse : horses) {
+                if (!horse.hasFallen()) {
+                    if (random.nextDouble() < horse.getConfidence()) {
+                        horse.moveForward();
+                        horse.setConfidence(Math.max(horse.getConfidence() - 0.01, 0.0));
+                    }
+                    if (random.nextDouble() < (0.1 * horse.getConfidence() * horse.getConfidence())) {
+                        horse.fall();
+                    }
+                }
+                allDown &= horse.hasFallen();
+            }
+            if (allDown) {
+                for (int i = 0; i < horses.size(); i++) {
+                    Horse horse = template.get(i);
+                    horses.set(i, new Horse(horse.getSymbol(), horse.getName(), horse.getConfidence()));
+                }
+            }
+        };
+        TickTimer.runFor(TARGET_NANOS / 5, tick);
+        return TickTimer.runFor(TARGET_NANOS, tick);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Moves every lane of a RaceField once, for RaceField.tickBulk.
+ *
+ * A kernel makes its random numbers from a counter instead of asking a generator: draw i of a
+ * tick is the lowbias32 hash of seed + (i + 1) * GAMMA, keeping the top 31 bits. Lane l uses
+ * draw l to decide whether it moves and draw size + l to decide whether it falls, so every
+ * kernel makes the same race from the same seeds, however many lanes it handles at once. Each
+ * lane's chances are stored as the largest draw that still succeeds, compared with as an int,
+ * which keeps the whole tick in 32-bit lanes; chances are resolved to 2^-31 instead of the
+ * 2^-53 of nextDouble.
+ */
+interface RaceFieldKernel {
+    int GAMMA = 0x9E3779B9;
+
+    /**
+     * Moves every lane once, updating the field's arrays and its finisher and standing counts.
+     *
+     * @param seed the seed for this tick's draws
+     */
+    void tick(RaceField field, int seed);
+
+    /**
+     * @return a short name for reports
+     */
+    String name();
+
+    /**
+     * @return draw index of the stream started from seed, from 0 to 2^31 - 1
+     */
+    static int draw(int seed, int index) {
+        int x = seed + (index + 1) * GAMMA;
+        x = (x ^ (x >>> 16)) * 0x7FEB352D;
+        x = (x ^ (x >>> 15)) * 0x846CA68B;
+        return (x ^ (x >>> 16)) >>> 1;
+    }
+
+    /**
+     * @return t such that d &lt;= t exactly when d / 2^31 is below chance, for any draw d; -1 when
+     *         no draw succeeds
+     */
+    static int threshold(double chance) {
+        return (int) (Math.ceil(Math.max(0.0, Math.min(chance, 1.0)) * 0x1p31) - 1);
+    }
+
+    /**
+     * @return the vector kernel if it was compiled in (mvn -Pvector) and the JVM was started
+     *         with --add-modules jdk.incubator.vector, otherwise null
+     */
+    static RaceFieldKernel vector() {
+        try {
+            return (RaceFieldKernel) Class.forName("VectorRaceFieldKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the vector kernel when it can be used, otherwise the scalar one
+     */
+    static RaceFieldKernel best() {
+        RaceFieldKernel vector = vector();
+        return vector != null ? vector : new ScalarRaceFieldKernel();
+    }
+}
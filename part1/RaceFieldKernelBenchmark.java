@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Measures RaceField throughput in lanes per second at 1k, 100k and 10M lanes: tick with its
+ * generator, then tickBulk with the scalar kernel and with the vector kernel. The vector column
+ * is only filled when part 1 was built with mvn -Pvector and the JVM has the incubator module.
+ * Fallen lanes cost next to nothing, so the field is restarted every few ticks to keep most
+ * lanes standing.
+ *
+ * Usage: java --add-modules jdk.incubator.vector RaceFieldKernelBenchmark [largest field size]
+ */
+public class RaceFieldKernelBenchmark {
+    private static final int TRACK_LENGTH = 1_000_000;
+    private static final long TARGET_NANOS = 500_000_000L;
+    /** The vector kernel is very slow until C2 compiles it, which takes about a second. */
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final int TICKS_PER_RACE = 16;
+
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        RaceFieldKernel vector = RaceFieldKernel.vector();
+        System.out.println("Vector kernel: " + (vector != null ? vector.name() : "not available"));
+        System.out.printf("%10s %16s %16s %16s%n", "Lanes", "tick M lanes/s", "scalar M lanes/s", "vector M lanes/s");
+        // Ten horses, one per confidence, shared between lanes so ten million lanes fit in memory.
+        List<Horse> pool = new ArrayList<>();
+        for (int tenths = 1; tenths <= 10; tenths++) {
+            pool.add(new Horse('H', "Horse " + tenths, tenths / 10.0));
+        }
+        for (int lanes = 1_000; lanes <= largest; lanes *= 100) {
+            SplittableRandom random = new SplittableRandom(42);
+            List<Horse> horses = new ArrayList<>(lanes);
+            for (int i = 0; i < lanes; i++) {
+                horses.add(pool.get(random.nextInt(pool.size())));
+            }
+            RaceField field = new RaceField(TRACK_LENGTH, horses);
+            double tick = lanes / time(field, null);
+            double scalar = lanes / time(field, new ScalarRaceFieldKernel());
+            double simd = vector != null ? lanes / time(field, vector) : Double.NaN;
+            System.out.printf("%10d %16.1f %16.1f %16.1f%n", lanes, tick * 1e3, scalar * 1e3, simd * 1e3);
+        }
+    }
+
+    /**
+     * @param kernel the kernel for tickBulk, or null to time tick
+     * @return the average nanoseconds per tick
+     */
+    private static double time(RaceField field, RaceFieldKernel kernel) {
+        SplittableRandom random = new SplittableRandom(7);
+        if (kernel != null) {
+            field.setKernel(kernel);
+        }
+        int[] ticks = {0};
+        Runnable tick = () -> {
+            int status = kernel != null ? field.tickBulk(random) : field.tick(random);
+            if (status != RaceField.RUNNING || ++ticks[0] == TICKS_PER_RACE) {
+                field.reset();
+                ticks[0] = 0;
+            }
+        };
+        field.reset();
+        TickTimer.runFor(WARMUP_NANOS, tick);
+        field.reset();
+        return TickTimer.runFor(TARGET_NANOS, tick);
+    }
+}
@@ -0,0 +1,335 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Works out the exact chance of every race outcome for the rules in Race, without simulating.
+ *
+ * Each tick a horse that has not fallen moves one step with probability equal to its
+ * confidence, then falls with probability 0.1 times its confidence squared. A horse's confidence
+ * only changes when it moves, so it is a function of the distance run, and one horse on its own
+ * is a Markov chain over (distance, fallen). The solver steps the distribution of every horse
+ * one tick at a time; horses with the same confidence share one chain. The horses' draws are
+ * independent, so the chance that the race ends in a given tick with a given set of winners is a
+ * product over horses, and summing the products over ticks gives each horse's chance of winning
+ * or tying, of being down when the race ends, and the chance that every horse falls.
+ *
+ * As in Race, a horse that reaches the line wins even if it falls in the same tick, unless every
+ * horse is down at the end of that tick, in which case nobody wins.
+ */
+public class RaceOddsSolver {
+    /** Stop once the chance that the race is still running is below this. */
+    private static final double TOLERANCE = 1e-13;
+    private static final int MAX_TICKS = 10_000_000;
+
+    private RaceOddsSolver() {
+    }
+
+    /**
+     * @param trackLength the length of the track
+     * @param confidences the starting confidence of each horse, in lane order
+     * @return the chance of every outcome
+     */
+    public static Solution solve(int trackLength, double... confidences) {
+        if (trackLength <= 0) {
+            throw new IllegalArgumentException("Track length must be positive.");
+        }
+        int lanes = confidences.length;
+        Map<Long, HorseChain> chains = new HashMap<>();
+        HorseChain[] laneChains = new HorseChain[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            double confidence = confidences[lane];
+            laneChains[lane] = chains.computeIfAbsent(Double.doubleToLongBits(confidence),
+                    bits -> new HorseChain(trackLength, confidence));
+        }
+
+        Solution solution = new Solution(lanes);
+        double[] notFinished = new double[lanes];
+        double[] fallen = new double[lanes];
+        double[] finished = new double[lanes];
+        double[] finishedAndFell = new double[lanes];
+        double[] notFinishedBefore = new double[lanes];
+        double[] downNow = new double[lanes];
+        double[] excludingNotFinishedBefore = new double[lanes];
+        double[] excludingNotFinished = new double[lanes];
+        double[] excludingDownNow = new double[lanes];
+        double[] excludingFallen = new double[lanes];
+        double allFallenBefore = lanes == 0 ? 1 : 0;
+        double stillRunning = 1;
+        int tick = 0;
+        while (stillRunning > TOLERANCE && tick < MAX_TICKS) {
+            tick++;
+            for (HorseChain chain : chains.values()) {
+                chain.step();
+            }
+            for (int lane = 0; lane < lanes; lane++) {
+                HorseChain chain = laneChains[lane];
+                notFinished[lane] = chain.notFinished;
+                fallen[lane] = chain.fallen;
+                finished[lane] = chain.finished;
+                finishedAndFell[lane] = chain.finishedAndFell;
+                notFinishedBefore[lane] = chain.notFinished + chain.finished;
+                downNow[lane] = chain.fallen + chain.finishedAndFell;
+            }
+            double allNotFinishedBefore = excludingEach(notFinishedBefore, excludingNotFinishedBefore);
+            double allNotFinished = excludingEach(notFinished, excludingNotFinished);
+            double allDownNow = excludingEach(downNow, excludingDownNow);
+            double allFallen = excludingEach(fallen, excludingFallen);
+
+            double endsWithWinner = (allNotFinishedBefore - allNotFinished) - (allDownNow - allFallen);
+            double endsAllFallen = allDownNow - allFallenBefore;
+            double soleWinners = 0;
+            for (int lane = 0; lane < lanes; lane++) {
+                solution.win[lane] += finished[lane] * excludingNotFinishedBefore[lane]
+                        - finishedAndFell[lane] * excludingDownNow[lane];
+                double sole = finished[lane] * excludingNotFinished[lane] - finishedAndFell[lane] * excludingFallen[lane];
+                solution.soleWin[lane] += sole;
+                soleWinners += sole;
+                solution.fall[lane] += downNow[lane] * excludingNotFinishedBefore[lane]
+                        - (fallen[lane] * excludingNotFinished[lane] - allFallen) - allFallenBefore;
+            }
+            solution.tie += endsWithWinner - soleWinners;
+            solution.allFallen += endsAllFallen;
+            solution.raceLength.add(endsWithWinner + endsAllFallen);
+            allFallenBefore = allFallen;
+            stillRunning = allNotFinished - allFallen;
+        }
+        solution.unresolved = Math.max(stillRunning, 0);
+        for (int lane = 0; lane < lanes; lane++) {
+            solution.finishTimes[lane] = laneChains[lane].finishTimes();
+        }
+        return solution;
+    }
+
+    /**
+     * Fills out[i] with the product of every value but values[i], without dividing.
+     *
+     * @return the product of all the values
+     */
+    private static double excludingEach(double[] values, double[] out) {
+        double product = 1;
+        for (int i = 0; i < values.length; i++) {
+            out[i] = product;
+            product *= values[i];
+        }
+        double suffix = 1;
+        for (int i = values.length - 1; i >= 0; i--) {
+            out[i] *= suffix;
+            suffix *= values[i];
+        }
+        return product;
+    }
+
+    /**
+     * One horse racing alone: the chance of being at each distance, still up, after each tick.
+     */
+    private static class HorseChain {
+        private final int trackLength;
+        private final double[] confidence;
+        private double[] running;
+        private double[] next;
+        private final List<Double> finishTimes = new ArrayList<>();
+        private int tick;
+
+        /** The chance of having fallen short of the line by the current tick. */
+        double fallen;
+        /** The chance of not having reached the line by the current tick. */
+        double notFinished = 1;
+        /** The chance of reaching the line in the current tick, and of also falling in it. */
+        double finished;
+        double finishedAndFell;
+
+        HorseChain(int trackLength, double startingConfidence) {
+            this.trackLength = trackLength;
+            this.running = new double[trackLength];
+            this.next = new double[trackLength];
+            this.running[0] = 1;
+            // Replay the updates Race makes on every move, so rounding matches a real race exactly.
+            this.confidence = new double[trackLength + 1];
+            Horse horse = new Horse(' ', "", startingConfidence);
+            for (int distance = 0; distance <= trackLength; distance++) {
+                confidence[distance] = horse.getConfidence();
+                horse.setConfidence(Math.max(horse.getConfidence() - 0.01, 0.0));
+            }
+        }
+
+        void step() {
+            tick++;
+            Arrays.fill(next, 0, Math.min(tick + 1, trackLength), 0);
+            double fell = 0;
+            finished = 0;
+            finishedAndFell = 0;
+            for (int distance = 0; distance < Math.min(tick, trackLength); distance++) {
+                double chance = running[distance];
+                if (chance == 0) {
+                    continue;
+                }
+                double moved = chance * confidence[distance];
+                double stayed = chance - moved;
+                double fallStaying = 0.1 * confidence[distance] * confidence[distance];
+                double fallMoving = 0.1 * confidence[distance + 1] * confidence[distance + 1];
+                fell += stayed * fallStaying;
+                next[distance] += stayed * (1 - fallStaying);
+                if (distance + 1 == trackLength) {
+                    finished += moved;
+                    finishedAndFell += moved * fallMoving;
+                } else {
+                    fell += moved * fallMoving;
+                    next[distance + 1] += moved * (1 - fallMoving);
+                }
+            }
+            double[] swap = running;
+            running = next;
+            next = swap;
+            fallen += fell;
+            notFinished -= finished;
+            finishTimes.add(finished);
+        }
+
+        double[] finishTimes() {
+            return finishTimes.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    /**
+     * The chance of every outcome of one race.
+     */
+    public static class Solution {
+        private final double[] win;
+        private final double[] soleWin;
+        private final double[] fall;
+        private final double[][] finishTimes;
+        private final List<Double> raceLength = new ArrayList<>();
+        private double tie;
+        private double allFallen;
+        private double unresolved;
+
+        Solution(int lanes) {
+            win = new double[lanes];
+            soleWin = new double[lanes];
+            fall = new double[lanes];
+            finishTimes = new double[lanes][];
+        }
+
+        /**
+         * @return the chance that the horse is among the winners, alone or in a tie
+         */
+        public double getWinProbability(int lane) {
+            return win[lane];
+        }
+
+        public double getSoleWinProbability(int lane) {
+            return soleWin[lane];
+        }
+
+        /**
+         * @return the chance that the horse is down when the race ends
+         */
+        public double getFallProbability(int lane) {
+            return fall[lane];
+        }
+
+        public double getTieProbability() {
+            return tie;
+        }
+
+        public double getAllFallenProbability() {
+            return allFallen;
+        }
+
+        /**
+         * @return element t is the chance the horse, racing alone, reaches the line in tick t + 1
+         */
+        public double[] getFinishTimeDistribution(int lane) {
+            return finishTimes[lane].clone();
+        }
+
+        /**
+         * @return element t is the chance the race ends in tick t + 1
+         */
+        public double[] getRaceLengthDistribution() {
+            return raceLength.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+
+        public double getExpectedRaceLength() {
+            double expected = 0;
+            for (int t = 0; t < raceLength.size(); t++) {
+                expected += (t + 1) * raceLength.get(t);
+            }
+            return expected;
+        }
+
+        /**
+         * @return the chance left unaccounted for when the solver stopped, at most about 1e-13
+         */
+        public double getUnresolvedProbability() {
+            return unresolved;
+        }
+    }
+
+    /**
+     * Solves a race setup file exactly, then runs the same races with RaceBatchRunner and shows
+     * both side by side. The z column is how many standard errors the simulated figure is from
+     * the exact one.
+     *
+     * Usage: java RaceOddsSolver setup.txt [races] [master seed]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java RaceOddsSolver <setup file> [races] [master seed]");
+            return;
+        }
+        RaceBatchRunner runner = RaceBatchRunner.fromFile(Paths.get(args[0]));
+        int races = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        long masterSeed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        double[] confidences = new double[runner.getFieldSize()];
+        for (int lane = 0; lane < confidences.length; lane++) {
+            confidences[lane] = runner.getConfidence(lane);
+        }
+
+        for (int i = 0; i < 2_000; i++) {
+            solve(runner.getTrackLength(), confidences);
+        }
+        int rounds = 10_000;
+        long start = System.nanoTime();
+        Solution exact = null;
+        for (int i = 0; i < rounds; i++) {
+            exact = solve(runner.getTrackLength(), confidences);
+        }
+        double exactMicros = (System.nanoTime() - start) / 1e3 / rounds;
+
+        start = System.nanoTime();
+        RaceBatchRunner.BatchResult simulated = runner.run(races, Runtime.getRuntime().availableProcessors(), masterSeed);
+        double simulatedMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%-20s %9s %9s %6s %9s %9s %6s%n", "Horse", "Win", "Sim win", "z", "Fall", "Sim fall", "z");
+        for (int lane = 0; lane < confidences.length; lane++) {
+            double win = exact.getWinProbability(lane);
+            double fall = exact.getFallProbability(lane);
+            double simulatedWin = (double) simulated.getWins(lane) / races;
+            double simulatedFall = (double) simulated.getFalls(lane) / races;
+            System.out.printf("%-20s %8.4f%% %8.4f%% %6.2f %8.4f%% %8.4f%% %6.2f%n", runner.getName(lane),
+                    100 * win, 100 * simulatedWin, zScore(simulatedWin, win, races),
+                    100 * fall, 100 * simulatedFall, zScore(simulatedFall, fall, races));
+        }
+        double simulatedAllFallen = (double) simulated.getAllFallen() / races;
+        double simulatedTie = (double) simulated.getTies() / races;
+        System.out.printf("%-20s %8.4f%% %8.4f%% %6.2f%n", "All fell", 100 * exact.getAllFallenProbability(),
+                100 * simulatedAllFallen, zScore(simulatedAllFallen, exact.getAllFallenProbability(), races));
+        System.out.printf("%-20s %8.4f%% %8.4f%% %6.2f%n", "Tie", 100 * exact.getTieProbability(),
+                100 * simulatedTie, zScore(simulatedTie, exact.getTieProbability(), races));
+        System.out.printf("Expected race length %.2f ticks, unresolved %.1e%n", exact.getExpectedRaceLength(),
+                exact.getUnresolvedProbability());
+        System.out.printf("Exact: %.1f us. Simulated: %d races in %.1f ms. Master seed: %d%n",
+                exactMicros, races, simulatedMillis, masterSeed);
+    }
+
+    private static double zScore(double simulated, double exact, int races) {
+        double error = Math.sqrt(exact * (1 - exact) / races);
+        return error == 0 ? 0 : (simulated - exact) / error;
+    }
+}
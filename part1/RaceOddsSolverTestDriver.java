@@ -0,0 +1,67 @@
+/**
+ * Checks RaceOddsSolver against a case worked out by hand and against RaceBatchRunner.
+ *
+ * Usage: java RaceOddsSolverTestDriver
+ */
+public class RaceOddsSolverTestDriver {
+    public static void main(String[] args) throws InterruptedException {
+        new RaceOddsSolverTestDriver().runTests();
+    }
+
+    private void runTests() throws InterruptedException {
+        // One horse on a one-step track: each tick it either reaches the line and stays up, or
+        // stays put and falls, or neither and tries again. Confidence reads to the nearest tenth,
+        // so losing 0.01 on the move leaves the chance of falling as it was.
+        double c = 0.5;
+        double fall = 0.1 * c * c;
+        double win = c * (1 - fall) / (1 - (1 - c) * (1 - fall));
+        RaceOddsSolver.Solution alone = RaceOddsSolver.solve(1, c);
+        validateClose(win, alone.getWinProbability(0), 1e-12);
+        validateClose(1 - win, alone.getAllFallenProbability(), 1e-12);
+        validateClose(0.0, alone.getTieProbability(), 1e-12);
+
+        // Every race ends with a sole winner, a tie, or every horse down.
+        double[] confidences = {0.9, 0.6, 0.6, 0.3};
+        RaceOddsSolver.Solution exact = RaceOddsSolver.solve(12, confidences);
+        double total = exact.getTieProbability() + exact.getAllFallenProbability() + exact.getUnresolvedProbability();
+        for (int lane = 0; lane < confidences.length; lane++) {
+            total += exact.getSoleWinProbability(lane);
+        }
+        validateClose(1.0, total, 1e-9);
+        validate(true, exact.getUnresolvedProbability() < 1e-12);
+        validateClose(exact.getWinProbability(1), exact.getWinProbability(2), 1e-15);
+
+        // The simulation agrees with the exact figures within four standard errors.
+        RaceBatchRunner runner = new RaceBatchRunner(12);
+        for (int lane = 0; lane < confidences.length; lane++) {
+            runner.addHorse((char) ('A' + lane), "Horse " + lane, confidences[lane]);
+        }
+        int races = 400_000;
+        RaceBatchRunner.BatchResult simulated = runner.run(races, 4, 20240601L);
+        for (int lane = 0; lane < confidences.length; lane++) {
+            validateSimulated(exact.getWinProbability(lane), simulated.getWins(lane), races);
+            validateSimulated(exact.getFallProbability(lane), simulated.getFalls(lane), races);
+        }
+        validateSimulated(exact.getAllFallenProbability(), simulated.getAllFallen(), races);
+        validateSimulated(exact.getTieProbability(), simulated.getTies(), races);
+
+        System.out.println("Success!");
+    }
+
+    private void validateSimulated(double exact, long count, int races) {
+        double standardError = Math.sqrt(exact * (1 - exact) / races);
+        double simulated = (double) count / races;
+        if (Math.abs(simulated - exact) > 4 * standardError + 1e-12)
+            throw new AssertionError("Expected about " + exact + ", but simulated " + simulated);
+    }
+
+    private void validateClose(double expected, double actual, double tolerance) {
+        if (Math.abs(expected - actual) > tolerance)
+            throw new AssertionError("Expected: " + expected + ", but got: " + actual);
+    }
+
+    private <T> void validate(T expected, T actual) {
+        if (!expected.equals(actual))
+            throw new AssertionError("Expected: " + expected + ", but got: " + actual);
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Moves the lanes of a RaceField one at a time. Used when the vector kernel is not available,
+ * and for the lanes left over after the vector kernel's last full batch.
+ */
+class ScalarRaceFieldKernel implements RaceFieldKernel {
+    @Override
+    public void tick(RaceField field, int seed) {
+        tickLanes(field, seed, 0, field.size());
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    /**
+     * Moves lanes from (inclusive) to to (exclusive).
+     */
+    static void tickLanes(RaceField field, int seed, int from, int to) {
+        int size = field.size();
+        int trackLength = field.trackLength;
+        int[] moveThreshold = field.moveThreshold;
+        int[] fallThreshold = field.fallThreshold;
+        int[] confidence = field.confidence;
+        int[] distance = field.distance;
+        boolean[] fallen = field.fallen;
+        int finished = 0;
+        int fell = 0;
+        for (int lane = from; lane < to; lane++) {
+            if (fallen[lane]) {
+                continue;
+            }
+            if (RaceFieldKernel.draw(seed, lane) <= moveThreshold[lane] && ++distance[lane] == trackLength) {
+                finished++;
+            }
+            if (RaceFieldKernel.draw(seed, size + lane) <= fallThreshold[lane]) {
+                fallen[lane] = true;
+                confidence[lane] = Math.max(confidence[lane] - 1, 0);
+                fell++;
+            }
+        }
+        field.finishers += finished;
+        field.standing -= fell;
+    }
+}
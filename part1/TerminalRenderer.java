@@ -0,0 +1,240 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Draws the race track in a terminal with ANSI escape codes. The first frame is drawn in full;
+ * after that only the lanes whose horse moved, fell or changed confidence are touched, by moving
+ * the cursor to the affected cells. Bytes per tick therefore depend on what changed rather than
+ * on the track length, and every frame is assembled in one reused buffer and written with a
+ * single channel write.
+ */
+public class TerminalRenderer {
+    private static final byte[] FALLEN = "❌".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STUMBLED = " (Horse has stumbled)".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CONFIDENCE = " (Confidence: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLEAR_TO_END_OF_LINE = "\033[K".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final int trackLength;
+    private final WritableByteChannel out;
+    private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    private byte[][] names;
+    private int[] shownDistance;
+    private boolean[] shownFallen;
+    private int[] shownConfidence;
+    private boolean firstFrame = true;
+
+    public TerminalRenderer(int trackLength) {
+        this(trackLength, Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+    }
+
+    public TerminalRenderer(int trackLength, WritableByteChannel out) {
+        this.trackLength = trackLength;
+        this.out = out;
+    }
+
+    /**
+     * Forgets the previous frame, so the next render redraws the whole screen.
+     */
+    public void reset() {
+        firstFrame = true;
+    }
+
+    /**
+     * Brings the screen up to date with the horses' current positions.
+     */
+    public void render(List<Horse> horses) {
+        compose(horses);
+        flush();
+    }
+
+    /**
+     * Works out the next frame from the horses' current positions without writing it, so a
+     * caller can hold the horses still for just this long and write the frame afterwards.
+     */
+    public void compose(List<Horse> horses) {
+        buffer.clear();
+        if (firstFrame || names.length != horses.size()) {
+            drawFullFrame(horses);
+            firstFrame = false;
+        } else {
+            for (int lane = 0; lane < horses.size(); lane++) {
+                drawLaneChanges(lane, horses.get(lane));
+            }
+            // Leave the cursor under the track, where the full frame would have left it.
+            moveTo(horses.size() + 3, 1);
+        }
+    }
+
+    private void drawFullFrame(List<Horse> horses) {
+        int lanes = horses.size();
+        names = new byte[lanes][];
+        shownDistance = new int[lanes];
+        shownFallen = new boolean[lanes];
+        shownConfidence = new int[lanes];
+
+        putAscii("\033[2J\033[H");
+        drawBorder();
+        for (int lane = 0; lane < lanes; lane++) {
+            Horse horse = horses.get(lane);
+            names[lane] = horse.getName().getBytes(StandardCharsets.UTF_8);
+            put((byte) '|');
+            drawSpaces(horse.getDistanceTravelled());
+            drawFromPosition(lane, horse);
+            put(LINE_SEPARATOR);
+        }
+        drawBorder();
+    }
+
+    private void drawLaneChanges(int lane, Horse horse) {
+        int distance = horse.getDistanceTravelled();
+        boolean fallen = horse.hasFallen();
+        int confidence = hundredths(horse.getConfidence());
+        int row = lane + 2;
+
+        if (fallen != shownFallen[lane]) {
+            // The fallen marker is two columns wide, so the rest of the lane shifts along.
+            int from = Math.min(distance, shownDistance[lane]);
+            moveTo(row, 2 + from);
+            drawSpaces(distance - from);
+            drawFromPosition(lane, horse);
+            put(CLEAR_TO_END_OF_LINE);
+            return;
+        }
+        if (distance != shownDistance[lane]) {
+            moveTo(row, 2 + shownDistance[lane]);
+            put((byte) ' ');
+            moveTo(row, 2 + distance);
+            drawMarker(horse);
+            shownDistance[lane] = distance;
+        }
+        if (!fallen && confidence != shownConfidence[lane]) {
+            moveTo(row, trackLength + 5);
+            drawStatus(lane, horse);
+            put(CLEAR_TO_END_OF_LINE);
+        }
+    }
+
+    /**
+     * Writes the lane from the horse's position to the end of its status text.
+     */
+    private void drawFromPosition(int lane, Horse horse) {
+        int distance = horse.getDistanceTravelled();
+        drawMarker(horse);
+        drawSpaces(trackLength - distance);
+        putAscii("| ");
+        drawStatus(lane, horse);
+        shownDistance[lane] = distance;
+        shownFallen[lane] = horse.hasFallen();
+    }
+
+    private void drawMarker(Horse horse) {
+        if (horse.hasFallen()) {
+            put(FALLEN);
+        } else {
+            char symbol = horse.getSymbol();
+            if (symbol < 0x80) {
+                put((byte) symbol);
+            } else {
+                put(String.valueOf(symbol).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void drawStatus(int lane, Horse horse) {
+        put(names[lane]);
+        if (horse.hasFallen()) {
+            put(STUMBLED);
+        } else {
+            int confidence = hundredths(horse.getConfidence());
+            put(CONFIDENCE);
+            putInt(confidence / 100);
+            put((byte) '.');
+            put((byte) ('0' + confidence / 10 % 10));
+            put((byte) ('0' + confidence % 10));
+            put((byte) ')');
+            shownConfidence[lane] = confidence;
+        }
+    }
+
+    private void drawSpaces(int count) {
+        for (int i = 0; i < count; i++) {
+            put((byte) ' ');
+        }
+    }
+
+    private void drawBorder() {
+        for (int i = 0; i < trackLength + 3; i++) {
+            put((byte) '=');
+        }
+        put(LINE_SEPARATOR);
+    }
+
+    private static int hundredths(double confidence) {
+        return (int) Math.round(confidence * 100);
+    }
+
+    private void moveTo(int row, int column) {
+        putAscii("\033[");
+        putInt(row);
+        put((byte) ';');
+        putInt(column);
+        put((byte) 'H');
+    }
+
+    private void putInt(int value) {
+        if (value >= 10) {
+            putInt(value / 10);
+        }
+        put((byte) ('0' + value % 10));
+    }
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    private void put(byte b) {
+        ensureRoom(1);
+        buffer.put(b);
+    }
+
+    private void put(byte[] bytes) {
+        ensureRoom(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensureRoom(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    /**
+     * Writes the frame made by the last compose.
+     */
+    public void flush() {
+        // Anything printed through System.out must reach the terminal before this frame.
+        System.out.flush();
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
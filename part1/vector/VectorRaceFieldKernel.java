@@ -0,0 +1,80 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Moves the lanes of a RaceField in batches as wide as the CPU's preferred int vector, using
+ * the incubating Vector API. Draws, thresholds, distances and confidences are all ints, so a
+ * batch is hashed, compared and updated without changing lane width. Batches where every lane
+ * has fallen are skipped, and lanes after the last full batch are left to the scalar kernel.
+ *
+ * Only compiled with mvn -Pvector, and only usable when the JVM is started with
+ * --add-modules jdk.incubator.vector.
+ */
+class VectorRaceFieldKernel implements RaceFieldKernel {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    /** GAMMA times each lane's offset in a batch, plus one GAMMA for the first draw. */
+    private static final IntVector STEPS;
+
+    static {
+        int[] steps = new int[INTS.length()];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = (i + 1) * GAMMA;
+        }
+        STEPS = IntVector.fromArray(INTS, steps, 0);
+    }
+
+    @Override
+    public void tick(RaceField field, int seed) {
+        int size = field.size();
+        int trackLength = field.trackLength;
+        int[] moveThreshold = field.moveThreshold;
+        int[] fallThreshold = field.fallThreshold;
+        int[] confidence = field.confidence;
+        int[] distance = field.distance;
+        boolean[] fallen = field.fallen;
+        int finished = 0;
+        int fell = 0;
+        int bound = INTS.loopBound(size);
+        for (int lane = 0; lane < bound; lane += INTS.length()) {
+            VectorMask<Integer> down = VectorMask.fromArray(INTS, fallen, lane);
+            if (down.allTrue()) {
+                continue;
+            }
+            VectorMask<Integer> moves = draws(seed, lane)
+                    .compare(VectorOperators.LE, IntVector.fromArray(INTS, moveThreshold, lane)).andNot(down);
+            VectorMask<Integer> falls = draws(seed, size + lane)
+                    .compare(VectorOperators.LE, IntVector.fromArray(INTS, fallThreshold, lane)).andNot(down);
+
+            if (moves.anyTrue()) {
+                IntVector moved = IntVector.fromArray(INTS, distance, lane).add(1, moves);
+                moved.intoArray(distance, lane);
+                finished += moved.eq(trackLength).and(moves).trueCount();
+            }
+            if (falls.anyTrue()) {
+                IntVector.fromArray(INTS, confidence, lane).sub(1, falls).max(0).intoArray(confidence, lane);
+                down.or(falls).intoArray(fallen, lane);
+                fell += falls.trueCount();
+            }
+        }
+        field.finishers += finished;
+        field.standing -= fell;
+        ScalarRaceFieldKernel.tickLanes(field, seed, bound, size);
+    }
+
+    @Override
+    public String name() {
+        return "vector " + INTS.vectorBitSize() + "-bit";
+    }
+
+    /**
+     * @return draws index to index + INTS.length() - 1, as RaceFieldKernel.draw makes them
+     */
+    private static IntVector draws(int seed, int index) {
+        IntVector x = STEPS.add(seed + index * GAMMA);
+        x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 16)).mul(0x7FEB352D);
+        x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 15)).mul(0x846CA68B);
+        return x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 16)).lanewise(VectorOperators.LSHR, 1);
+    }
+}
@@ -0,0 +1,470 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Prices a field by simulation like OddsEngine, but keeps going only until every equine's win
+ * probability is known to within a tolerance, and makes each simulated race count for more.
+ *
+ * The races follow CompetitionField's rules. In a CompetitionField every lane draws separately
+ * for moving and for stumbling, so each lane comes down to two independent times: the tick it
+ * would finish, which is negative binomial in the moves it needs, and the tick it would stumble,
+ * which is geometric. The winner is the lowest lane with the earliest finish that comes before its
+ * stumble. Both times are drawn from one uniform each by inverting their distributions, so a race
+ * is a function of two uniforms per lane, and those uniforms can be chosen with care:
+ * <ul>
+ * <li>Conditioning: a race does not score an equine 1 or 0 for winning. Given when its rivals
+ * finish, the chance that it finishes first without stumbling is a sum over its own finish time
+ * that is tabulated up front, and the race scores it that chance instead. The average is still
+ * the win probability, with far less spread.</li>
+ * <li>Common random numbers: each race settles every equine's estimate at once, and the races
+ * come from fixed seeds, so pricing the same field twice gives the same quotes and a small
+ * change to the field gives a small change to the quotes rather than fresh noise.</li>
+ * <li>Antithetic variates: half the races in a block use 1 - u for every uniform u of the other
+ * half. A race where an equine runs well is paired with one where it runs badly and its rivals
+ * run well, so the pair's average varies less than two independent races.</li>
+ * <li>Stratified sampling: within a block each uniform is a Latin hypercube sample, one draw from
+ * each equal slice of [0, 1) in a random order, so no block is short of fast or slow runs.</li>
+ * </ul>
+ * Races are simulated in blocks of BLOCK_SIZE. Blocks are independent, so the spread of the
+ * block averages gives an honest 95% confidence interval for each equine. After a first round of
+ * blocks, the engine estimates how many more are needed for the widest interval to fit the
+ * tolerance, runs them across the fork/join pool, and checks again.
+ */
+public class AdaptiveOddsEngine {
+    /**
+     * How the uniforms in a block are chosen.
+     */
+    public enum Sampling {
+        PLAIN, ANTITHETIC, STRATIFIED, STRATIFIED_ANTITHETIC;
+
+        boolean isAntithetic() {
+            return this == ANTITHETIC || this == STRATIFIED_ANTITHETIC;
+        }
+
+        boolean isStratified() {
+            return this == STRATIFIED || this == STRATIFIED_ANTITHETIC;
+        }
+    }
+
+    static final int BLOCK_SIZE = 64;
+    /** Blocks in the first round, enough for the spread of block averages to be trusted. */
+    private static final int MIN_BLOCKS = 32;
+    private static final int BLOCKS_PER_LEAF = 16;
+    /** The seed used when none is given, so every pricing shares the same random numbers. */
+    private static final long COMMON_SEED = 0x5EED0DD5L;
+    /** Finish times are tabulated until less than this chance is left. */
+    private static final double FINISH_TAIL = 1e-12;
+    private static final int MAX_FINISH_TICKS = 1 << 22;
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    private final double tolerance;
+    private final long maxSimulations;
+    private final long latencyBudgetMillis;
+    private final Sampling sampling;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param tolerance           the widest allowed half-width of each 95% confidence interval
+     * @param maxSimulations      the most races to simulate however wide the intervals are
+     * @param latencyBudgetMillis the most time to spend
+     */
+    public AdaptiveOddsEngine(double tolerance, long maxSimulations, long latencyBudgetMillis) {
+        this(tolerance, maxSimulations, latencyBudgetMillis, Sampling.STRATIFIED_ANTITHETIC, ForkJoinPool.commonPool());
+    }
+
+    public AdaptiveOddsEngine(double tolerance, long maxSimulations, long latencyBudgetMillis, Sampling sampling,
+                              ForkJoinPool pool) {
+        if (tolerance <= 0 || maxSimulations <= 0 || latencyBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Tolerance, simulation count and latency budget must be positive");
+        }
+        this.tolerance = tolerance;
+        this.maxSimulations = maxSimulations;
+        this.latencyBudgetMillis = latencyBudgetMillis;
+        this.sampling = sampling;
+        this.pool = pool;
+    }
+
+    /**
+     * Prices the field with the common seed.
+     *
+     * @param field               the equines in lane order
+     * @param competitionDistance the length of the race track
+     * @return one quote per equine, in the same order as the field, each with its race count and
+     *         confidence interval
+     */
+    public OddsEngine.OddsQuote[] price(List<Equine> field, int competitionDistance) {
+        return price(field, competitionDistance, COMMON_SEED);
+    }
+
+    /**
+     * Prices the field with block b's uniforms drawn from a stream seeded with seed + b. The
+     * quotes do not depend on how the blocks are spread over the pool.
+     */
+    public OddsEngine.OddsQuote[] price(List<Equine> field, int competitionDistance, long seed) {
+        int size = field.size();
+        LaneModel[] lanes = new LaneModel[size];
+        for (int lane = 0; lane < size; lane++) {
+            lanes[lane] = new LaneModel(field.get(lane), competitionDistance);
+        }
+        long deadline = System.nanoTime() + latencyBudgetMillis * 1_000_000L;
+        long maxBlocks = Math.max(1, maxSimulations / BLOCK_SIZE);
+
+        // Sums of block averages and of their squares.
+        double[] sums = new double[2 * size];
+        long blocks = 0;
+        long round = Math.min(MIN_BLOCKS, maxBlocks);
+        while (round > 0) {
+            double[] result = pool.invoke(new BlockTask(lanes, sampling, seed, blocks, round, deadline));
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += result[i];
+            }
+            long done = (long) result[sums.length];
+            blocks += done;
+            if (done < round) {
+                break;
+            }
+            double widest = 0;
+            for (int lane = 0; lane < size; lane++) {
+                widest = Math.max(widest, halfWidth(sums[lane], sums[size + lane], blocks));
+            }
+            if (widest <= tolerance) {
+                break;
+            }
+            // The half-width shrinks with the square root of the block count.
+            long needed = (long) Math.ceil(blocks * (widest / tolerance) * (widest / tolerance) * 1.05);
+            round = Math.min(Math.max(needed - blocks, MIN_BLOCKS), maxBlocks - blocks);
+        }
+
+        OddsEngine.OddsQuote[] quotes = new OddsEngine.OddsQuote[size];
+        for (int lane = 0; lane < size; lane++) {
+            double probability = blocks == 0 ? 0 : sums[lane] / blocks;
+            quotes[lane] = new OddsEngine.OddsQuote(probability, blocks * BLOCK_SIZE,
+                    halfWidth(sums[lane], sums[size + lane], blocks));
+        }
+        return quotes;
+    }
+
+    /**
+     * Prices the field and stores each payout multiplier on its equine, like OddsEngine.quoteField.
+     */
+    public void quoteField(List<Equine> field, int competitionDistance) {
+        OddsEngine.OddsQuote[] quotes = price(field, competitionDistance);
+        for (int i = 0; i < quotes.length; i++) {
+            field.get(i).setQuotedOdds(quotes[i].getPayoutMultiplier());
+        }
+    }
+
+    /**
+     * @return half the width of the 95% confidence interval from block averages
+     */
+    private static double halfWidth(double sum, double sumOfSquares, long blocks) {
+        if (blocks < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = sum / blocks;
+        double variance = Math.max(sumOfSquares - blocks * mean * mean, 0) / (blocks - 1);
+        return OddsEngine.Z_95 * Math.sqrt(variance / blocks);
+    }
+
+    /**
+     * One lane's finish and stumble times as functions of a uniform.
+     */
+    private static class LaneModel {
+        private final int movesNeeded;
+        /** finishCdf[k] is the chance of finishing by tick movesNeeded + k, if not stumbling. */
+        private final double[] finishCdf;
+        /** cleanFinishCdf[k] is the chance of finishing by tick movesNeeded + k without stumbling first. */
+        private final double[] cleanFinishCdf;
+        private final double logNoStumble;
+
+        LaneModel(Equine equine, double competitionDistance) {
+            double moveChance = Math.max(0.0, Math.min(equine.getBaseVelocity(), 1.0));
+            double stumbleChance = Math.max(0.0, Math.min(0.1 * equine.getBaseVelocity() * equine.getBaseVelocity(), 1.0));
+            logNoStumble = Math.log1p(-stumbleChance);
+
+            // Count the moves the same way CompetitionField makes them.
+            double stride = competitionDistance / 15 * equine.calculateVelocityWithGear();
+            int moves = 0;
+            if (moveChance > 0 && stride > 0 && competitionDistance / stride < MAX_FINISH_TICKS) {
+                for (double distance = 0; distance < competitionDistance; moves++) {
+                    distance = Math.min(distance + stride, competitionDistance);
+                }
+            } else {
+                moves = NEVER;
+            }
+            movesNeeded = moves;
+            if (moves == NEVER) {
+                finishCdf = new double[0];
+                cleanFinishCdf = new double[0];
+                return;
+            }
+
+            // The negative binomial distribution of the tick of the last needed move, worked in
+            // logarithms so long races with slow equines do not underflow. The lane has not
+            // stumbled by the end of tick t - 1 with chance (1 - s)^(t - 1).
+            double logMove = moveChance < 1 ? Math.log(moveChance) : 0;
+            double logStay = moveChance < 1 ? Math.log1p(-moveChance) : Double.NEGATIVE_INFINITY;
+            double[] cdf = new double[64];
+            double[] cleanCdf = new double[64];
+            double logChance = moves * logMove;
+            double total = 0;
+            double clean = 0;
+            int k = 0;
+            while (total < 1 - FINISH_TAIL && k < MAX_FINISH_TICKS) {
+                if (k == cdf.length) {
+                    cdf = Arrays.copyOf(cdf, 2 * k);
+                    cleanCdf = Arrays.copyOf(cleanCdf, 2 * k);
+                }
+                int tick = moves + k;
+                double chance = Math.exp(logChance);
+                total += chance;
+                clean += chance * Math.exp((tick - 1) * logNoStumble);
+                cdf[k] = total;
+                cleanCdf[k] = clean;
+                // P(F = t + 1) = P(F = t) * t / (t + 1 - moves) * (1 - p)
+                logChance += Math.log(tick) - Math.log(tick + 1 - moves) + logStay;
+                k++;
+            }
+            finishCdf = Arrays.copyOf(cdf, k);
+            cleanFinishCdf = Arrays.copyOf(cleanCdf, k);
+        }
+
+        /**
+         * @return the chance of finishing by the given tick without stumbling first
+         */
+        double cleanFinishBy(int tick) {
+            if (movesNeeded == NEVER || tick < movesNeeded) {
+                return 0;
+            }
+            long k = (long) tick - movesNeeded;
+            return cleanFinishCdf[(int) Math.min(k, cleanFinishCdf.length - 1)];
+        }
+
+        int finishTick(double u) {
+            if (movesNeeded == NEVER) {
+                return NEVER;
+            }
+            int low = 0;
+            int high = finishCdf.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (finishCdf[middle] > u) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return movesNeeded + low;
+        }
+
+        /**
+         * @return the tick at the end of which the lane stumbles, the first t with
+         *         1 - (1 - s)^t above u
+         */
+        int stumbleTick(double u) {
+            if (logNoStumble == 0) {
+                return NEVER;
+            }
+            double ticks = Math.log1p(-u) / logNoStumble;
+            return ticks < NEVER - 1 ? (int) ticks + 1 : NEVER;
+        }
+    }
+
+    private static class BlockTask extends RecursiveTask<double[]> {
+        private final LaneModel[] lanes;
+        private final Sampling sampling;
+        private final long seed;
+        private final long firstBlock;
+        private final long blocks;
+        private final long deadline;
+
+        BlockTask(LaneModel[] lanes, Sampling sampling, long seed, long firstBlock, long blocks, long deadline) {
+            this.lanes = lanes;
+            this.sampling = sampling;
+            this.seed = seed;
+            this.firstBlock = firstBlock;
+            this.blocks = blocks;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return the sums of block averages, then of their squares, then the number of blocks run
+         */
+        @Override
+        protected double[] compute() {
+            if (blocks > BLOCKS_PER_LEAF) {
+                long half = blocks / 2;
+                BlockTask left = new BlockTask(lanes, sampling, seed, firstBlock, half, deadline);
+                BlockTask right = new BlockTask(lanes, sampling, seed, firstBlock + half, blocks - half, deadline);
+                left.fork();
+                double[] sums = right.compute();
+                double[] other = left.join();
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += other[i];
+                }
+                return sums;
+            }
+
+            int size = lanes.length;
+            int dimensions = 2 * size;
+            double[] sums = new double[dimensions + 1];
+            double[] uniforms = new double[BLOCK_SIZE * dimensions];
+            int[] order = new int[BLOCK_SIZE];
+            int[] finishes = new int[size];
+            int[] firstAbove = new int[size];
+            double[] wins = new double[size];
+            long done = 0;
+            for (long block = firstBlock; block < firstBlock + blocks; block++) {
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+                fillUniforms(new SplittableRandom(seed + block), uniforms, dimensions, order);
+                Arrays.fill(wins, 0);
+                for (int race = 0; race < BLOCK_SIZE; race++) {
+                    addWinChances(uniforms, race * dimensions, finishes, firstAbove, wins);
+                }
+                for (int lane = 0; lane < size; lane++) {
+                    double average = wins[lane] / BLOCK_SIZE;
+                    sums[lane] += average;
+                    sums[size + lane] += average * average;
+                }
+                done++;
+            }
+            sums[dimensions] = done;
+            return sums;
+        }
+
+        /**
+         * Fills one block's uniforms: race r's come at r * dimensions, the finish uniforms of each
+         * lane first and then the stumble uniforms.
+         */
+        private void fillUniforms(SplittableRandom random, double[] uniforms, int dimensions, int[] order) {
+            int distinct = sampling.isAntithetic() ? BLOCK_SIZE / 2 : BLOCK_SIZE;
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                if (sampling.isStratified()) {
+                    for (int i = 0; i < distinct; i++) {
+                        order[i] = i;
+                    }
+                    for (int i = distinct - 1; i > 0; i--) {
+                        int j = random.nextInt(i + 1);
+                        int swap = order[i];
+                        order[i] = order[j];
+                        order[j] = swap;
+                    }
+                    for (int race = 0; race < distinct; race++) {
+                        uniforms[race * dimensions + dimension] = (order[race] + random.nextDouble()) / distinct;
+                    }
+                } else {
+                    for (int race = 0; race < distinct; race++) {
+                        uniforms[race * dimensions + dimension] = random.nextDouble();
+                    }
+                }
+                if (sampling.isAntithetic()) {
+                    for (int race = 0; race < distinct; race++) {
+                        uniforms[(race + distinct) * dimensions + dimension] = 1 - uniforms[race * dimensions + dimension];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Works out when each lane would finish in one race, or NEVER if it stumbles first, then
+         * adds to each lane its chance of beating the others' finishes. Lower lanes win ties,
+         * so a lane must finish before every lane below it and no later than every lane above.
+         */
+        private void addWinChances(double[] uniforms, int offset, int[] finishes, int[] firstAbove, double[] wins) {
+            int size = lanes.length;
+            for (int lane = 0; lane < size; lane++) {
+                int finish = lanes[lane].finishTick(uniforms[offset + lane]);
+                // A lane that finishes in the tick it would have stumbled has already won.
+                finishes[lane] = finish <= lanes[lane].stumbleTick(uniforms[offset + size + lane]) ? finish : NEVER;
+            }
+            int above = NEVER;
+            for (int lane = size - 1; lane >= 0; lane--) {
+                firstAbove[lane] = above;
+                above = Math.min(above, finishes[lane]);
+            }
+            int below = NEVER;
+            for (int lane = 0; lane < size; lane++) {
+                int latest = Math.min(below == NEVER ? NEVER : below - 1, firstAbove[lane]);
+                wins[lane] += lanes[lane].cleanFinishBy(latest);
+                below = Math.min(below, finishes[lane]);
+            }
+        }
+    }
+
+    /**
+     * Prices a random field with each kind of sampling and with plain OddsEngine, all to the
+     * same tolerance, and shows how many races each needed. The last column is how many
+     * independent races the same intervals would take, divided by the races used, for the
+     * equine that gains least.
+     *
+     * Usage: java AdaptiveOddsEngine [field size] [tolerance]
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        double tolerance = args.length > 1 ? Double.parseDouble(args[1]) : 0.001;
+        int competitionDistance = 500;
+        SplittableRandom random = new SplittableRandom(42);
+        String[] gearNames = {"saddle", "horseshoes", "bridle"};
+        List<Equine> field = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Set<String> gear = new HashSet<>();
+            gear.add(gearNames[random.nextInt(gearNames.length)]);
+            field.add(new Equine("Equine " + i, Equine.Species.ARABIAN, Color.GRAY,
+                    0.3 + random.nextDouble() * 0.6, gear, "🐎"));
+        }
+
+        System.out.printf("%-22s %12s %10s %12s %10s%n", "Sampling", "Races", "ms", "Widest CI", "Gain");
+        for (Sampling sampling : Sampling.values()) {
+            AdaptiveOddsEngine engine = new AdaptiveOddsEngine(tolerance, 100_000_000, 60_000, sampling,
+                    ForkJoinPool.commonPool());
+            engine.price(field, competitionDistance, 1);
+            long start = System.nanoTime();
+            OddsEngine.OddsQuote[] quotes = engine.price(field, competitionDistance, 2);
+            report(sampling.toString(), quotes, (System.nanoTime() - start) / 1e6);
+        }
+        // Plain OddsEngine needs p(1 - p) (z / tolerance)^2 races for the widest interval.
+        AdaptiveOddsEngine reference = new AdaptiveOddsEngine(tolerance / 4, 100_000_000, 60_000);
+        OddsEngine.OddsQuote[] exact = reference.price(field, competitionDistance, 3);
+        double worst = 0;
+        for (OddsEngine.OddsQuote quote : exact) {
+            worst = Math.max(worst, quote.getProbability() * (1 - quote.getProbability()));
+        }
+        long races = (long) Math.ceil(worst * Math.pow(OddsEngine.Z_95 / tolerance, 2));
+        OddsEngine plain = new OddsEngine(races, 60_000);
+        long start = System.nanoTime();
+        OddsEngine.OddsQuote[] quotes = plain.price(field, competitionDistance, 4);
+        report("OddsEngine", quotes, (System.nanoTime() - start) / 1e6);
+
+        System.out.printf("%n%-10s %10s %10s %10s%n", "Equine", "Win", "+/-", "Reference");
+        OddsEngine.OddsQuote[] adaptive = new AdaptiveOddsEngine(tolerance, 100_000_000, 60_000).price(field, competitionDistance);
+        for (int lane = 0; lane < size; lane++) {
+            System.out.printf("%-10s %9.4f%% %9.4f%% %9.4f%%%n", field.get(lane).getEquineName(),
+                    100 * adaptive[lane].getProbability(), 100 * adaptive[lane].getConfidenceHalfWidth(),
+                    100 * exact[lane].getProbability());
+        }
+    }
+
+    private static void report(String name, OddsEngine.OddsQuote[] quotes, double millis) {
+        double widest = 0;
+        double gain = Double.POSITIVE_INFINITY;
+        for (OddsEngine.OddsQuote quote : quotes) {
+            double p = quote.getProbability();
+            double halfWidth = quote.getConfidenceHalfWidth();
+            widest = Math.max(widest, halfWidth);
+            if (halfWidth > 0) {
+                double independent = p * (1 - p) * Math.pow(OddsEngine.Z_95 / halfWidth, 2);
+                gain = Math.min(gain, independent / quote.getSimulations());
+            }
+        }
+        System.out.printf("%-22s %12d %10.1f %12.5f %9.1fx%n", name, quotes[0].getSimulations(), millis, widest, gain);
+    }
+}
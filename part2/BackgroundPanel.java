@@ -0,0 +1,280 @@
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A panel that paints a picture stretched to fill it.
+ *
+ * The picture is decoded and scaled on a background thread, so the window can be shown straight
+ * away; until the picture for the current size is ready, the panel stretches the nearest one it
+ * has, or paints a plain background. Scaled copies are kept in memory for the last few sizes
+ * and written to a disk cache as raw pixels, so the next launch at the same size reads them back
+ * instead of decoding and scaling again. Cache files are named after a checksum of the picture,
+ * so a changed picture is never shown from a stale copy. Each write prunes the disk cache to the
+ * most recently used few sizes of the current picture, so it does not grow with every window
+ * size tried.
+ */
+public class BackgroundPanel extends JPanel {
+    private static final int MEMORY_CACHE_SIZE = 4;
+    private static final int DISK_CACHE_SIZE = 8;
+    private static final int CACHE_MAGIC = 0x45514247;
+
+    private final String resource;
+    private final Path cacheDirectory;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "background-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Dimension, BufferedImage> scaledImages = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Dimension, BufferedImage> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    };
+    private volatile Dimension requestedSize;
+    private BufferedImage shownImage;
+    private Consumer<Boolean> readyListener;
+
+    // Used by the loader thread only.
+    private byte[] sourceBytes;
+    private long sourceChecksum;
+    private BufferedImage sourceImage;
+
+    /**
+     * @param resource       the class path resource of the picture, e.g. "/background.jpg"
+     * @param cacheDirectory where scaled copies are kept between launches, or null to keep none
+     */
+    public BackgroundPanel(String resource, Path cacheDirectory) {
+        super(new BorderLayout());
+        this.resource = resource;
+        this.cacheDirectory = cacheDirectory;
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                requestImage(getSize());
+            }
+        });
+    }
+
+    /**
+     * Sets what to call on the event thread when the first picture is shown; it is told whether
+     * the picture came from the disk cache.
+     */
+    public void setReadyListener(Consumer<Boolean> readyListener) {
+        this.readyListener = readyListener;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        BufferedImage image = shownImage;
+        if (image == null) {
+            super.paintComponent(g);
+        } else if (image.getWidth() == getWidth() && image.getHeight() == getHeight()) {
+            g.drawImage(image, 0, 0, null);
+        } else {
+            g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+        }
+    }
+
+    /**
+     * Shows the picture for a size from memory, or starts preparing it in the background.
+     */
+    private void requestImage(Dimension size) {
+        if (size.width <= 0 || size.height <= 0) {
+            return;
+        }
+        BufferedImage cached = scaledImages.get(size);
+        if (cached != null) {
+            show(cached, false);
+            return;
+        }
+        requestedSize = size;
+        loader.execute(() -> {
+            // Sizes passed over while the window was being dragged are skipped.
+            if (!size.equals(requestedSize)) {
+                return;
+            }
+            boolean[] fromDisk = {false};
+            BufferedImage image;
+            try {
+                image = loadImage(size.width, size.height, fromDisk);
+            } catch (IOException e) {
+                System.err.println("Could not load background " + resource + ": " + e.getMessage());
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                scaledImages.put(size, image);
+                if (size.equals(getSize()) || shownImage == null) {
+                    show(image, fromDisk[0]);
+                }
+            });
+        });
+    }
+
+    private void show(BufferedImage image, boolean fromDisk) {
+        boolean first = shownImage == null;
+        shownImage = image;
+        repaint();
+        if (first && readyListener != null) {
+            readyListener.accept(fromDisk);
+        }
+    }
+
+    private BufferedImage loadImage(int width, int height, boolean[] fromDisk) throws IOException {
+        if (sourceBytes == null) {
+            try (InputStream in = getClass().getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IOException("not found");
+                }
+                sourceBytes = in.readAllBytes();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(sourceBytes);
+            sourceChecksum = crc.getValue();
+        }
+        Path cacheFile = cacheDirectory != null
+                ? cacheDirectory.resolve(String.format("background-%08x-%dx%d.argb", sourceChecksum, width, height))
+                : null;
+        if (cacheFile != null && Files.exists(cacheFile)) {
+            BufferedImage cached = readCache(cacheFile, width, height);
+            if (cached != null) {
+                try {
+                    // Marks the copy as recently used, so pruning keeps it.
+                    Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis()));
+                } catch (IOException e) {
+                    // It may then be pruned a little early.
+                }
+                fromDisk[0] = true;
+                return cached;
+            }
+        }
+
+        if (sourceImage == null) {
+            sourceImage = ImageIO.read(new ByteArrayInputStream(sourceBytes));
+            if (sourceImage == null) {
+                throw new IOException("not a readable image");
+            }
+        }
+        BufferedImage scaled = scale(sourceImage, width, height);
+        if (cacheFile != null) {
+            try {
+                writeCache(cacheFile, scaled);
+                pruneCache();
+            } catch (IOException e) {
+                System.err.println("Could not cache background in " + cacheDirectory + ": " + e.getMessage());
+            }
+        }
+        return scaled;
+    }
+
+    /**
+     * Deletes the cached copies of any other picture, and all but the DISK_CACHE_SIZE most
+     * recently used copies of this one.
+     */
+    private void pruneCache() throws IOException {
+        String current = String.format("background-%08x-", sourceChecksum);
+        List<Path> copies = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDirectory, "background-*.argb")) {
+            for (Path file : files) {
+                if (file.getFileName().toString().startsWith(current)) {
+                    copies.add(file);
+                } else {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        if (copies.size() <= DISK_CACHE_SIZE) {
+            return;
+        }
+        Map<Path, FileTime> lastUsed = new LinkedHashMap<>();
+        for (Path copy : copies) {
+            lastUsed.put(copy, Files.getLastModifiedTime(copy));
+        }
+        copies.sort((a, b) -> lastUsed.get(b).compareTo(lastUsed.get(a)));
+        for (Path copy : copies.subList(DISK_CACHE_SIZE, copies.size())) {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    /**
+     * Scales with bicubic interpolation, halving at most once per pass when shrinking a lot so
+     * the result stays smooth.
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = currentWidth / 2 >= width ? currentWidth / 2 : width;
+            currentHeight = currentHeight / 2 >= height ? currentHeight / 2 : height;
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = next.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g2d.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static BufferedImage readCache(Path file, int width, int height) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != 12 + 4L * width * height) {
+                return null;
+            }
+            IntBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            if (data.get() != CACHE_MAGIC || data.get() != width || data.get() != height) {
+                return null;
+            }
+            int[] pixels = new int[width * height];
+            data.get(pixels);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            image.getRaster().setDataElements(0, 0, width, height, pixels);
+            return image;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeCache(Path file, BufferedImage image) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = (int[]) image.getRaster().getDataElements(0, 0, width, height, null);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            for (int pixel : pixels) {
+                out.writeInt(pixel);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/**
+ * Bettor accounts and their open wagers kept in parallel primitive arrays, for fields with far
+ * more bettors than it is sensible to hold as Equestrian objects.
+ *
+ * Bettors are numbered from 0 in the order they are added. A bettor's open wagers form a chain
+ * through the wager arrays, newest first, so a wager is added in constant time and settlement
+ * can give each bettor's wagers to one worker without sorting them first.
+ *
+ * Adding bettors and wagers is not thread-safe. A SettlementEngine may update the accounts from
+ * several threads, but each bettor is only ever touched by one of them.
+ */
+public class BettorBook {
+    static final int NO_WAGER = -1;
+
+    int bettorCount;
+    double[] balance;
+    double[] totalWinnings;
+    double[] totalLosses;
+    int[] victories;
+    int[] lastWager;
+
+    int wagerCount;
+    int[] previousWager;
+    int[] equineId;
+    double[] stake;
+    double[] odds;
+
+    public BettorBook(int expectedBettors, int expectedWagers) {
+        int bettors = Math.max(expectedBettors, 1);
+        int wagers = Math.max(expectedWagers, 1);
+        balance = new double[bettors];
+        totalWinnings = new double[bettors];
+        totalLosses = new double[bettors];
+        victories = new int[bettors];
+        lastWager = new int[bettors];
+        previousWager = new int[wagers];
+        equineId = new int[wagers];
+        stake = new double[wagers];
+        odds = new double[wagers];
+    }
+
+    /**
+     * Opens an account.
+     *
+     * @param initialBalance the starting balance
+     * @return the number of the new bettor
+     */
+    public int addBettor(double initialBalance) {
+        if (bettorCount == balance.length) {
+            int capacity = balance.length * 2;
+            balance = Arrays.copyOf(balance, capacity);
+            totalWinnings = Arrays.copyOf(totalWinnings, capacity);
+            totalLosses = Arrays.copyOf(totalLosses, capacity);
+            victories = Arrays.copyOf(victories, capacity);
+            lastWager = Arrays.copyOf(lastWager, capacity);
+        }
+        int bettor = bettorCount++;
+        balance[bettor] = initialBalance;
+        lastWager[bettor] = NO_WAGER;
+        return bettor;
+    }
+
+    /**
+     * Takes a stake from a bettor's balance and opens a wager on an equine.
+     *
+     * @param bettor   the number of the bettor
+     * @param equineId the id of the equine backed
+     * @param amount   the stake
+     * @param odds     the winnings per unit staked if the equine wins
+     * @return false if the balance does not cover the stake
+     */
+    public boolean placeWager(int bettor, int equineId, double amount, double odds) {
+        if (bettor < 0 || bettor >= bettorCount) {
+            throw new IndexOutOfBoundsException("No bettor " + bettor);
+        }
+        if (balance[bettor] < amount) {
+            return false;
+        }
+        if (wagerCount == stake.length) {
+            int capacity = stake.length * 2;
+            previousWager = Arrays.copyOf(previousWager, capacity);
+            this.equineId = Arrays.copyOf(this.equineId, capacity);
+            stake = Arrays.copyOf(stake, capacity);
+            this.odds = Arrays.copyOf(this.odds, capacity);
+        }
+        int wager = wagerCount++;
+        balance[bettor] -= amount;
+        previousWager[wager] = lastWager[bettor];
+        this.equineId[wager] = equineId;
+        stake[wager] = amount;
+        this.odds[wager] = odds;
+        lastWager[bettor] = wager;
+        return true;
+    }
+
+    /**
+     * Frees the wager arrays for the next race, once settlement has emptied every bettor's chain.
+     */
+    void clearWagers() {
+        wagerCount = 0;
+    }
+
+    public int getBettorCount() {
+        return bettorCount;
+    }
+
+    public int getOpenWagerCount() {
+        return wagerCount;
+    }
+
+    public double getBalance(int bettor) {
+        return balance[bettor];
+    }
+
+    public double getTotalWinnings(int bettor) {
+        return totalWinnings[bettor];
+    }
+
+    public double getTotalLosses(int bettor) {
+        return totalLosses[bettor];
+    }
+
+    public int getVictories(int bettor) {
+        return victories[bettor];
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Running figures for one bettor, brought up to date in constant time as each wager is settled
+ * so nothing has to be recomputed from the wager history when they are shown.
+ *
+ * The variance of the profit per wager uses Welford's method, which stays accurate over long
+ * runs without keeping the individual results. Drawdown is the largest fall in net winnings
+ * from an earlier peak.
+ */
+public class BettorStats {
+    private long settledWagers;
+    private long wins;
+    private double totalStaked;
+    private double netWinnings;
+    private double meanProfit;
+    private double sumSquaredDeviation;
+    private int currentStreak;
+    private int longestWinStreak;
+    private int longestLosingStreak;
+    private double peakNet;
+    private double maxDrawdown;
+
+    /**
+     * Adds one settled wager.
+     *
+     * @param stake  the amount staked
+     * @param profit the winnings if the wager won, or minus the stake if it lost
+     */
+    public synchronized void record(double stake, double profit) {
+        settledWagers++;
+        totalStaked += stake;
+        netWinnings += profit;
+
+        double delta = profit - meanProfit;
+        meanProfit += delta / settledWagers;
+        sumSquaredDeviation += delta * (profit - meanProfit);
+
+        if (profit > 0) {
+            wins++;
+            currentStreak = currentStreak > 0 ? currentStreak + 1 : 1;
+            longestWinStreak = Math.max(longestWinStreak, currentStreak);
+        } else {
+            currentStreak = currentStreak < 0 ? currentStreak - 1 : -1;
+            longestLosingStreak = Math.max(longestLosingStreak, -currentStreak);
+        }
+
+        peakNet = Math.max(peakNet, netWinnings);
+        maxDrawdown = Math.max(maxDrawdown, peakNet - netWinnings);
+    }
+
+    public synchronized long getSettledWagers() {
+        return settledWagers;
+    }
+
+    public synchronized long getWins() {
+        return wins;
+    }
+
+    /**
+     * @return the share of settled wagers that won, from 0 to 1
+     */
+    public synchronized double getWinRate() {
+        return settledWagers == 0 ? 0 : (double) wins / settledWagers;
+    }
+
+    public synchronized double getTotalStaked() {
+        return totalStaked;
+    }
+
+    public synchronized double getNetWinnings() {
+        return netWinnings;
+    }
+
+    /**
+     * @return net winnings as a share of the total staked
+     */
+    public synchronized double getReturnOnInvestment() {
+        return totalStaked == 0 ? 0 : netWinnings / totalStaked;
+    }
+
+    public synchronized double getMeanProfit() {
+        return meanProfit;
+    }
+
+    /**
+     * @return the sample variance of the profit per wager
+     */
+    public synchronized double getProfitVariance() {
+        return settledWagers < 2 ? 0 : sumSquaredDeviation / (settledWagers - 1);
+    }
+
+    /**
+     * @return the length of the current run of results, positive for wins and negative for losses
+     */
+    public synchronized int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    public synchronized int getLongestWinStreak() {
+        return longestWinStreak;
+    }
+
+    public synchronized int getLongestLosingStreak() {
+        return longestLosingStreak;
+    }
+
+    public synchronized double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+}
@@ -0,0 +1,91 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+/**
+ * A table with one row per bettor, reading each cell from the Equestrian and its running
+ * BettorStats when it is drawn. Used in place of building a panel per bettor, so the dialogs
+ * open in the same time for any number of bettors.
+ */
+public class BettorTableModel extends AbstractTableModel {
+    /**
+     * The figures a bettor table can show.
+     */
+    public enum Column {
+        EQUESTRIAN("Equestrian"),
+        BALANCE("Balance"),
+        VICTORIES("Number of Victories"),
+        WIN_RATE("Win Rate (%)"),
+        WINNINGS("Total Winnings"),
+        LOSSES("Total Losses"),
+        NET("Net Amount"),
+        ROI("ROI (%)"),
+        PROFIT_STD_DEV("Profit Std Dev"),
+        LONGEST_WIN_STREAK("Longest Win Streak"),
+        LONGEST_LOSING_STREAK("Longest Losing Streak"),
+        MAX_DRAWDOWN("Max Drawdown");
+
+        private final String title;
+
+        Column(String title) {
+            this.title = title;
+        }
+    }
+
+    private final List<Equestrian> bettors;
+    private final Column[] columns;
+
+    /**
+     * @param bettors the bettors, one per row
+     * @param columns the figures to show, in order
+     */
+    public BettorTableModel(List<Equestrian> bettors, Column... columns) {
+        this.bettors = bettors;
+        this.columns = columns;
+    }
+
+    @Override
+    public int getRowCount() {
+        return bettors.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column].title;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Equestrian bettor = bettors.get(row);
+        switch (columns[column]) {
+            case EQUESTRIAN:
+                return "Equestrian " + bettor.getId();
+            case BALANCE:
+                return String.format("$%.2f", bettor.getBalance());
+            case VICTORIES:
+                return String.valueOf(bettor.getTotalVictories());
+            case WIN_RATE:
+                return String.format("%.2f", bettor.getStats().getWinRate() * 100);
+            case WINNINGS:
+                return String.format("$%.2f", bettor.getTotalWinnings());
+            case LOSSES:
+                return String.format("$%.2f", bettor.getTotalLosses());
+            case NET:
+                return String.format("$%.2f", bettor.getStats().getNetWinnings());
+            case ROI:
+                return String.format("%.2f", bettor.getStats().getReturnOnInvestment() * 100);
+            case PROFIT_STD_DEV:
+                return String.format("$%.2f", Math.sqrt(bettor.getStats().getProfitVariance()));
+            case LONGEST_WIN_STREAK:
+                return String.valueOf(bettor.getStats().getLongestWinStreak());
+            case LONGEST_LOSING_STREAK:
+                return String.valueOf(bettor.getStats().getLongestLosingStreak());
+            default:
+                return String.format("$%.2f", bettor.getStats().getMaxDrawdown());
+        }
+    }
+}
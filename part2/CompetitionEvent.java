@@ -0,0 +1,74 @@
+/**
+ * Something that happened during a competition: an equine moved, stumbled or crossed the line,
+ * or the competition ended. The distance is copied when the event is made, so it stays right
+ * while the competition runs on.
+ */
+public class CompetitionEvent {
+    /**
+     * What happened.
+     */
+    public enum Type { MOVED, STUMBLED, FINISHED, ENDED }
+
+    private final Type type;
+    private final long tick;
+    private final int lane;
+    private final Equine equine;
+    private final double distance;
+
+    /**
+     * @param type     what happened
+     * @param tick     the tick it happened in, counting from 1
+     * @param lane     the equine's lane, counting from 0
+     * @param equine   the equine it happened to
+     * @param distance how far the equine had run
+     */
+    public CompetitionEvent(Type type, long tick, int lane, Equine equine, double distance) {
+        this.type = type;
+        this.tick = tick;
+        this.lane = lane;
+        this.equine = equine;
+        this.distance = distance;
+    }
+
+    /**
+     * @param tick   the last tick of the competition
+     * @param winner the winning equine, or null if every equine stumbled
+     * @return the event ending a competition
+     */
+    public static CompetitionEvent ended(long tick, Equine winner) {
+        return new CompetitionEvent(Type.ENDED, tick, -1, winner, winner != null ? winner.getDistanceTraveled() : 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    /**
+     * @return the equine the event is about; for the end of a competition, the winner or null
+     */
+    public Equine getEquine() {
+        return equine;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        if (type == Type.ENDED) {
+            return "tick " + tick + ": competition ended, "
+                    + (equine != null ? "won by " + equine.getEquineName() : "every equine stumbled");
+        }
+        String action = type == Type.MOVED ? "moved to" : type == Type.STUMBLED ? "stumbled at" : "finished at";
+        return String.format("tick %d: lane %d %s %s %.1f", tick, lane, equine.getEquineName(), action, distance);
+    }
+}
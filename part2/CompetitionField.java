@@ -0,0 +1,224 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Competition state for a whole field kept in primitive arrays indexed by lane. The rules are
+ * the ones RaceEngine applies to the Equine objects of a stepped competition, with each
+ * equine's stride (distance / 15 * velocity with gear) and stumble chance worked out once up
+ * front.
+ *
+ * tick draws from the generator it is given, one lane after another. tickBulk hands the whole
+ * field to a CompetitionFieldKernel, which makes the draws itself from one seed per tick, so
+ * lanes can be handled in SIMD batches; see CompetitionFieldKernel for how the draws are made.
+ */
+public class CompetitionField {
+    public static final int RUNNING = -2;
+    public static final int ALL_STUMBLED = -1;
+
+    private static final CompetitionFieldKernel DEFAULT_KERNEL = CompetitionFieldKernel.best();
+
+    private final double competitionDistance;
+    private final int size;
+    private final Equine[] equines;
+    private final double[] baseVelocity;
+    private final double[] stumbleChance;
+    // Package-private for the kernels.
+    final double[] stride;
+    final double[] distanceTraveled;
+    final boolean[] stumbled;
+    /** The move and stumble chances as CompetitionFieldKernel thresholds. */
+    final int[] moveThreshold;
+    final int[] stumbleThreshold;
+    int runners;
+    private CompetitionFieldKernel kernel = DEFAULT_KERNEL;
+
+    public CompetitionField(List<Equine> field, double competitionDistance) {
+        this.competitionDistance = competitionDistance;
+        this.size = field.size();
+        equines = field.toArray(new Equine[0]);
+        baseVelocity = new double[size];
+        stride = new double[size];
+        stumbleChance = new double[size];
+        distanceTraveled = new double[size];
+        stumbled = new boolean[size];
+        moveThreshold = new int[size];
+        stumbleThreshold = new int[size];
+        for (int lane = 0; lane < size; lane++) {
+            baseVelocity[lane] = equines[lane].getBaseVelocity();
+            stride[lane] = competitionDistance / 15 * equines[lane].calculateVelocityWithGear();
+            stumbleChance[lane] = 0.1 * baseVelocity[lane] * baseVelocity[lane];
+            moveThreshold[lane] = CompetitionFieldKernel.threshold(baseVelocity[lane]);
+            stumbleThreshold[lane] = CompetitionFieldKernel.threshold(stumbleChance[lane]);
+        }
+        reset();
+    }
+
+    /**
+     * Puts every equine back at the start and on its feet.
+     */
+    public void reset() {
+        Arrays.fill(distanceTraveled, 0);
+        Arrays.fill(stumbled, false);
+        runners = 0;
+        for (int lane = 0; lane < size; lane++) {
+            if (baseVelocity[lane] > 0) {
+                runners++;
+            }
+        }
+    }
+
+    /**
+     * Moves every lane once, in lane order. The first equine to reach the finish ends the
+     * competition straight away, so lanes after it are not moved in that tick.
+     *
+     * @return the winning lane, ALL_STUMBLED, or RUNNING
+     */
+    public int tick(RandomGenerator random) {
+        double[] distanceTraveled = this.distanceTraveled;
+        boolean[] stumbled = this.stumbled;
+        for (int lane = 0; lane < size; lane++) {
+            if (!stumbled[lane] && distanceTraveled[lane] < competitionDistance) {
+                if (random.nextDouble() < baseVelocity[lane]) {
+                    distanceTraveled[lane] = Math.min(distanceTraveled[lane] + stride[lane], competitionDistance);
+                }
+                if (distanceTraveled[lane] >= competitionDistance) {
+                    return lane;
+                }
+            }
+            if (random.nextDouble() < stumbleChance[lane] && !stumbled[lane]) {
+                stumbled[lane] = true;
+                runners--;
+            }
+        }
+        // Equines with no velocity never move and never stumble, so once every other
+        // equine is down nobody can finish.
+        return runners == 0 ? ALL_STUMBLED : RUNNING;
+    }
+
+    /**
+     * Moves every lane once using the kernel, drawing only the tick's seed from the generator.
+     * The chances are the same as tick, but the draws are not, so the same generator gives a
+     * different competition.
+     *
+     * @return the winning lane, ALL_STUMBLED, or RUNNING
+     */
+    public int tickBulk(RandomGenerator random) {
+        int winner = kernel.tick(this, random.nextInt());
+        if (winner != RUNNING) {
+            return winner;
+        }
+        return runners == 0 ? ALL_STUMBLED : RUNNING;
+    }
+
+    /**
+     * Runs ticks until the competition is decided.
+     *
+     * @return the winning lane, or ALL_STUMBLED
+     */
+    public int run(RandomGenerator random) {
+        int result;
+        do {
+            result = tick(random);
+        } while (result == RUNNING);
+        return result;
+    }
+
+    /**
+     * @param kernel the kernel tickBulk uses; the vector kernel is used by default when it is available
+     */
+    void setKernel(CompetitionFieldKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    CompetitionFieldKernel getKernel() {
+        return kernel;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getCompetitionDistance() {
+        return competitionDistance;
+    }
+
+    public Equine getEquine(int lane) {
+        return equines[lane];
+    }
+
+    public double getDistanceTraveled(int lane) {
+        return distanceTraveled[lane];
+    }
+
+    public boolean hasStumbled(int lane) {
+        return stumbled[lane];
+    }
+
+    /**
+     * @return an Equine whose position and stumble flag live in this field's arrays
+     */
+    public Equine getLaneView(int lane) {
+        return new LaneView(this, lane);
+    }
+
+    /**
+     * An Equine that keeps its racing state in one lane of a CompetitionField and takes its
+     * name, species, gear and icon from the equine that was entered in that lane.
+     */
+    private static class LaneView extends Equine {
+        private final CompetitionField field;
+        private final int lane;
+
+        LaneView(CompetitionField field, int lane) {
+            super(field.equines[lane].getEquineName(), field.equines[lane].getSpecies(),
+                    field.equines[lane].getEquineColor(), field.baseVelocity[lane],
+                    field.equines[lane].getGear(), field.equines[lane].getIcon());
+            this.field = field;
+            this.lane = lane;
+        }
+
+        @Override
+        public int getId() {
+            return field.equines[lane].getId();
+        }
+
+        @Override
+        public void compete(double competitionDistance) {
+            if (!field.stumbled[lane]) {
+                field.distanceTraveled[lane] = Math.min(field.distanceTraveled[lane] + field.stride[lane], competitionDistance);
+            }
+        }
+
+        @Override
+        public void stumble() {
+            if (!field.stumbled[lane]) {
+                field.stumbled[lane] = true;
+                if (field.baseVelocity[lane] > 0) {
+                    field.runners--;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasStumbled() {
+            return field.stumbled[lane];
+        }
+
+        @Override
+        public double getDistanceTraveled() {
+            return field.distanceTraveled[lane];
+        }
+
+        @Override
+        public void resetForNewCompetition() {
+            field.distanceTraveled[lane] = 0;
+            if (field.stumbled[lane]) {
+                field.stumbled[lane] = false;
+                if (field.baseVelocity[lane] > 0) {
+                    field.runners++;
+                }
+            }
+        }
+    }
+}
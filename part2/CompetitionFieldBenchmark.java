@@ -0,0 +1,80 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the cost of one CompetitionField tick as the field grows, next to the same tick done
+ * over a List of Equine objects the way the competition loop does it.
+ *
+ * Usage: java CompetitionFieldBenchmark [largest field size]
+ */
+public class CompetitionFieldBenchmark {
+    private static final double COMPETITION_DISTANCE = 500;
+    private static final long TARGET_NANOS = 500_000_000L;
+    private static final String[] GEAR = {"saddle", "horseshoes", "bridle"};
+
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%10s %14s %12s %15s %12s%n", "Lanes", "Field ns/tick", "ns/lane", "Equine ns/tick", "ns/lane");
+        for (int lanes = 10; lanes <= largest; lanes *= 10) {
+            List<Equine> equines = new ArrayList<>();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < lanes; i++) {
+                Set<String> gear = new HashSet<>();
+                gear.add(GEAR[random.nextInt(GEAR.length)]);
+                equines.add(new Equine("Equine " + i, Equine.Species.ARABIAN, Color.GRAY,
+                        0.05 + random.nextDouble() * 0.95, gear, "🐎"));
+            }
+            double fieldNanos = timeField(new CompetitionField(equines, COMPETITION_DISTANCE));
+            double equineNanos = timeEquines(equines);
+            System.out.printf("%10d %14.0f %12.2f %15.0f %12.2f%n",
+                    lanes, fieldNanos, fieldNanos / lanes, equineNanos, equineNanos / lanes);
+        }
+    }
+
+    private static double timeField(CompetitionField field) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Runnable tick = () -> {
+            if (field.tick(random) != CompetitionField.RUNNING) {
+                field.reset();
+            }
+        };
+        TickTimer.runFor(TARGET_NANOS / 5, tick);
+        field.reset();
+        return TickTimer.runFor(TARGET_NANOS, tick);
+    }
+
+    private static double timeEquines(List<Equine> equines) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (Equine equine : equines) {
+            equine.resetForNewCompetition();
+        }
+        Runnable tick = () -> {
+            boolean finished = false;
+            for (Equine participant : equines) {
+                if (!participant.hasStumbled() && participant.getDistanceTraveled() < COMPETITION_DISTANCE) {
+                    if (random.nextDouble() < participant.getBaseVelocity()) {
+                        participant.compete(COMPETITION_DISTANCE);
+                    }
+                    if (participant.getDistanceTraveled() >= COMPETITION_DISTANCE && !participant.hasStumbled()) {
+                        finished = true;
+                        break;
+                    }
+                }
+                if (random.nextDouble() < 0.1 * participant.getBaseVelocity() * participant.getBaseVelocity()) {
+                    participant.stumble();
+                }
+            }
+            if (finished || equines.stream().allMatch(Equine::hasStumbled)) {
+                for (Equine equine : equines) {
+                    equine.resetForNewCompetition();
+                }
+            }
+        };
+        TickTimer.runFor(TARGET_NANOS / 5, tick);
+        return TickTimer.runFor(TARGET_NANOS, tick);
+    }
+}
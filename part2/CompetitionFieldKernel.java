@@ -0,0 +1,64 @@
+/**
+ * Moves every lane of a CompetitionField once, for CompetitionField.tickBulk.
+ *
+ * Random numbers come from a counter instead of a generator, the same way as RaceFieldKernel in
+ * part 1: draw i of a tick is the lowbias32 hash of seed + (i + 1) * GAMMA, keeping the top 31
+ * bits. Lane l uses draw l to decide whether it moves and draw size + l to decide whether it
+ * stumbles, so every kernel makes the same competition from the same seeds. Chances are stored
+ * as the largest draw that still succeeds.
+ */
+interface CompetitionFieldKernel {
+    int GAMMA = 0x9E3779B9;
+
+    /**
+     * Moves every lane once in lane order, stopping at the first equine to reach the finish,
+     * and updates the field's arrays and runner count.
+     *
+     * @param seed the seed for this tick's draws
+     * @return the winning lane, or CompetitionField.RUNNING if nobody finished
+     */
+    int tick(CompetitionField field, int seed);
+
+    /**
+     * @return a short name for reports
+     */
+    String name();
+
+    /**
+     * @return draw index of the stream started from seed, from 0 to 2^31 - 1
+     */
+    static int draw(int seed, int index) {
+        int x = seed + (index + 1) * GAMMA;
+        x = (x ^ (x >>> 16)) * 0x7FEB352D;
+        x = (x ^ (x >>> 15)) * 0x846CA68B;
+        return (x ^ (x >>> 16)) >>> 1;
+    }
+
+    /**
+     * @return t such that d &lt;= t exactly when d / 2^31 is below chance, for any draw d; -1 when
+     *         no draw succeeds
+     */
+    static int threshold(double chance) {
+        return (int) (Math.ceil(Math.max(0.0, Math.min(chance, 1.0)) * 0x1p31) - 1);
+    }
+
+    /**
+     * @return the vector kernel if it was compiled in (mvn -Pvector) and the JVM was started
+     *         with --add-modules jdk.incubator.vector, otherwise null
+     */
+    static CompetitionFieldKernel vector() {
+        try {
+            return (CompetitionFieldKernel) Class.forName("VectorCompetitionFieldKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the vector kernel when it can be used, otherwise the scalar one
+     */
+    static CompetitionFieldKernel best() {
+        CompetitionFieldKernel vector = vector();
+        return vector != null ? vector : new ScalarCompetitionFieldKernel();
+    }
+}
@@ -0,0 +1,69 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Measures CompetitionField throughput in lanes per second at 1k, 100k and 10M lanes: tick with
+ * its generator, then tickBulk with the scalar kernel and with the vector kernel. The vector
+ * column is only filled when part 2 was built with mvn -Pvector and the JVM has the incubator
+ * module. Every equine is slowed down so competitions last long enough to time a full field.
+ *
+ * Usage: java --add-modules jdk.incubator.vector CompetitionFieldKernelBenchmark [largest field size]
+ */
+public class CompetitionFieldKernelBenchmark {
+    private static final double COMPETITION_DISTANCE = 1e9;
+    private static final long TARGET_NANOS = 500_000_000L;
+    /** The vector kernel is very slow until C2 compiles it, which takes about a second. */
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final int TICKS_PER_COMPETITION = 16;
+
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        CompetitionFieldKernel vector = CompetitionFieldKernel.vector();
+        System.out.println("Vector kernel: " + (vector != null ? vector.name() : "not available"));
+        System.out.printf("%10s %16s %16s %16s%n", "Lanes", "tick M lanes/s", "scalar M lanes/s", "vector M lanes/s");
+        // A small pool of equines shared between lanes, so ten million lanes fit in memory.
+        SplittableRandom random = new SplittableRandom(42);
+        List<Equine> pool = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            pool.add(new Equine("Equine " + i, Equine.Species.ARABIAN, Color.GRAY,
+                    0.05 + random.nextDouble() * 0.95, Collections.emptySet(), "🐎"));
+        }
+        for (int lanes = 1_000; lanes <= largest; lanes *= 100) {
+            List<Equine> equines = new ArrayList<>(lanes);
+            for (int i = 0; i < lanes; i++) {
+                equines.add(pool.get(random.nextInt(pool.size())));
+            }
+            CompetitionField field = new CompetitionField(equines, COMPETITION_DISTANCE);
+            double tick = lanes / time(field, null);
+            double scalar = lanes / time(field, new ScalarCompetitionFieldKernel());
+            double simd = vector != null ? lanes / time(field, vector) : Double.NaN;
+            System.out.printf("%10d %16.1f %16.1f %16.1f%n", lanes, tick * 1e3, scalar * 1e3, simd * 1e3);
+        }
+    }
+
+    /**
+     * @param kernel the kernel for tickBulk, or null to time tick
+     * @return the average nanoseconds per tick
+     */
+    private static double time(CompetitionField field, CompetitionFieldKernel kernel) {
+        SplittableRandom random = new SplittableRandom(7);
+        if (kernel != null) {
+            field.setKernel(kernel);
+        }
+        int[] ticks = {0};
+        Runnable tick = () -> {
+            int result = kernel != null ? field.tickBulk(random) : field.tick(random);
+            if (result != CompetitionField.RUNNING || ++ticks[0] == TICKS_PER_COMPETITION) {
+                field.reset();
+                ticks[0] = 0;
+            }
+        };
+        field.reset();
+        TickTimer.runFor(WARMUP_NANOS, tick);
+        field.reset();
+        return TickTimer.runFor(TARGET_NANOS, tick);
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.List;
+
+/**
+ * A snapshot of where every equine was after one tick of a competition.
+ *
+ * Frames are recycled by a FrameExchanger: the competition thread fills a frame it owns and
+ * publishes it, after which readers only ever see it through the getters until it is handed
+ * back for reuse.
+ */
+public class CompetitionFrame {
+    private final double[] distanceTraveled;
+    private final boolean[] stumbled;
+    private long tick;
+
+    public CompetitionFrame(int lanes) {
+        this.distanceTraveled = new double[lanes];
+        this.stumbled = new boolean[lanes];
+    }
+
+    /**
+     * Copies the current position and stumble flag of every participant into this frame.
+     *
+     * @param participants the equines in lane order
+     * @param tick         the number of ticks run so far
+     */
+    void capture(List<Equine> participants, long tick) {
+        for (int lane = 0; lane < distanceTraveled.length; lane++) {
+            Equine participant = participants.get(lane);
+            distanceTraveled[lane] = participant.getDistanceTraveled();
+            stumbled[lane] = participant.hasStumbled();
+        }
+        this.tick = tick;
+    }
+
+    /**
+     * Sets the state of one lane, for frames read back from a recording rather than captured.
+     */
+    void set(int lane, double distanceTraveled, boolean stumbled) {
+        this.distanceTraveled[lane] = distanceTraveled;
+        this.stumbled[lane] = stumbled;
+    }
+
+    void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    public int size() {
+        return distanceTraveled.length;
+    }
+
+    public double getDistanceTraveled(int lane) {
+        return distanceTraveled[lane];
+    }
+
+    public boolean hasStumbled(int lane) {
+        return stumbled[lane];
+    }
+
+    public long getTick() {
+        return tick;
+    }
+}
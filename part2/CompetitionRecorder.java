@@ -0,0 +1,181 @@
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a competition to a compact binary file as it runs, for CompetitionRecording to replay.
+ *
+ * The file starts with the seed and the definition of every equine in the field. Each tick
+ * then stores only the lanes that changed: the gap to the previous changed lane and how far the
+ * equine moved, in hundredths of a distance unit, as varints of one or two bytes. Every
+ * KEYFRAME_INTERVAL ticks the positions of all lanes are written in full instead, and a footer
+ * lists where each of these keyframes starts, so a replay can jump to any tick by decoding at
+ * most KEYFRAME_INTERVAL ticks.
+ *
+ * A recorder is used by one thread at a time: the competition's tick thread while it runs, and
+ * whichever thread the scheduler finishes the competition on after its last tick.
+ */
+public class CompetitionRecorder implements AutoCloseable {
+    static final int MAGIC = 0x45515252;
+    static final int END_MAGIC = 0x45515245;
+    static final int VERSION = 1;
+    static final int KEYFRAME_INTERVAL = 64;
+    static final int UNITS_PER_DISTANCE = 100;
+    static final int FOOTER_BYTES = 16;
+    /** The winner lane recorded for a competition that was abandoned before it ended. */
+    public static final int ABANDONED = -2;
+
+    private final DataOutputStream out;
+    private final long[] units;
+    private final boolean[] stumbled;
+    private int[] keyframeOffsets = new int[16];
+    private int keyframes;
+    private int ticks;
+    private boolean finished;
+
+    private CompetitionRecorder(DataOutputStream out, int lanes) {
+        this.out = out;
+        this.units = new long[lanes];
+        this.stumbled = new boolean[lanes];
+    }
+
+    /**
+     * Creates the recording file and writes its header and the starting positions.
+     *
+     * @param file     where to record, replacing any file already there
+     * @param seed     the seed of the competition's random stream
+     * @param distance the length of the track
+     * @param field    the equines in lane order
+     * @return a recorder ready for the first tick
+     * @throws IOException if the file cannot be written
+     */
+    public static CompetitionRecorder create(Path file, long seed, int distance, List<Equine> field) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(distance);
+            out.writeInt(KEYFRAME_INTERVAL);
+            out.writeInt(field.size());
+            for (Equine equine : field) {
+                Color color = equine.getEquineColor();
+                out.writeUTF(equine.getEquineName());
+                out.writeByte(equine.getSpecies().ordinal());
+                out.writeInt(color != null ? color.getRGB() : 0);
+                out.writeDouble(equine.getBaseVelocity());
+                out.writeInt(equine.getGearMask());
+                out.writeUTF(equine.getIcon() != null ? equine.getIcon() : "");
+            }
+            CompetitionRecorder recorder = new CompetitionRecorder(out, field.size());
+            recorder.writeKeyframe();
+            return recorder;
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the positions after the next tick. Does nothing once the recording is finished.
+     *
+     * @param frame the frame captured for the tick
+     * @throws IOException if the file cannot be written
+     */
+    public void record(CompetitionFrame frame) throws IOException {
+        if (finished) {
+            return;
+        }
+        ticks++;
+        if (ticks % KEYFRAME_INTERVAL == 0) {
+            for (int lane = 0; lane < units.length; lane++) {
+                units[lane] = toUnits(frame.getDistanceTraveled(lane));
+                stumbled[lane] = frame.hasStumbled(lane);
+            }
+            writeKeyframe();
+            return;
+        }
+
+        int changed = 0;
+        for (int lane = 0; lane < units.length; lane++) {
+            if (toUnits(frame.getDistanceTraveled(lane)) != units[lane] || frame.hasStumbled(lane) != stumbled[lane]) {
+                changed++;
+            }
+        }
+        writeVarint(changed);
+        int previous = -1;
+        for (int lane = 0; lane < units.length && changed > 0; lane++) {
+            long position = toUnits(frame.getDistanceTraveled(lane));
+            boolean down = frame.hasStumbled(lane);
+            if (position != units[lane] || down != stumbled[lane]) {
+                writeVarint(lane - previous - 1);
+                writeVarint((position - units[lane]) << 1 | (down ? 1 : 0));
+                units[lane] = position;
+                stumbled[lane] = down;
+                previous = lane;
+                changed--;
+            }
+        }
+    }
+
+    /**
+     * Writes the keyframe index and footer and closes the file.
+     *
+     * @param winnerLane the lane of the winner, -1 if every equine stumbled, or ABANDONED
+     * @throws IOException if the file cannot be written
+     */
+    public void finish(int winnerLane) throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            int indexOffset = out.size();
+            for (int i = 0; i < keyframes; i++) {
+                out.writeInt(keyframeOffsets[i]);
+            }
+            out.writeInt(ticks);
+            out.writeInt(winnerLane);
+            out.writeInt(indexOffset);
+            out.writeInt(END_MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Closes the recording as abandoned unless it has been finished.
+     */
+    @Override
+    public void close() throws IOException {
+        finish(ABANDONED);
+    }
+
+    private void writeKeyframe() throws IOException {
+        if (keyframes == keyframeOffsets.length) {
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+        }
+        keyframeOffsets[keyframes++] = out.size();
+        for (int lane = 0; lane < units.length; lane++) {
+            writeVarint(units[lane] << 1 | (stumbled[lane] ? 1 : 0));
+        }
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long toUnits(double distance) {
+        return Math.round(distance * UNITS_PER_DISTANCE);
+    }
+}
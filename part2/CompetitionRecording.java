@@ -0,0 +1,249 @@
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A competition written by CompetitionRecorder, read back through a memory-mapped file.
+ *
+ * Frames are decoded on demand. Reading the tick after the last one read continues from where
+ * the previous read stopped; reading any other tick starts again from the keyframe at or before
+ * it, so seeking costs the same wherever in the competition the tick is. A recording is read by
+ * one thread at a time.
+ */
+public class CompetitionRecording {
+    private final ByteBuffer data;
+    private final long seed;
+    private final long startedAt;
+    private final int distance;
+    private final int keyframeInterval;
+    private final List<String> names = new ArrayList<>();
+    private final List<Equine.Species> species = new ArrayList<>();
+    private final List<Color> colors = new ArrayList<>();
+    private final List<Double> velocities = new ArrayList<>();
+    private final List<Integer> gearMasks = new ArrayList<>();
+    private final List<String> icons = new ArrayList<>();
+    private final int[] keyframeOffsets;
+    private final int tickCount;
+    private final int winnerLane;
+
+    private final long[] units;
+    private final boolean[] stumbled;
+    private long cursorTick = -1;
+    private int cursor;
+
+    private CompetitionRecording(ByteBuffer data) throws IOException {
+        this.data = data;
+        int size = data.limit();
+        if (size < 8 + CompetitionRecorder.FOOTER_BYTES || data.getInt(0) != CompetitionRecorder.MAGIC) {
+            throw new IOException("Not a competition recording");
+        }
+        if (data.getInt(4) != CompetitionRecorder.VERSION) {
+            throw new IOException("Unsupported recording version " + data.getInt(4));
+        }
+        int footer = size - CompetitionRecorder.FOOTER_BYTES;
+        if (data.getInt(footer + 12) != CompetitionRecorder.END_MAGIC) {
+            throw new IOException("Recording was not finished");
+        }
+        tickCount = data.getInt(footer);
+        winnerLane = data.getInt(footer + 4);
+        int indexOffset = data.getInt(footer + 8);
+        keyframeOffsets = new int[(footer - indexOffset) / Integer.BYTES];
+        for (int i = 0; i < keyframeOffsets.length; i++) {
+            keyframeOffsets[i] = data.getInt(indexOffset + i * Integer.BYTES);
+        }
+
+        // The header ends where the first keyframe starts.
+        byte[] header = new byte[keyframeOffsets[0]];
+        data.get(0, header);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header, 8, header.length - 8));
+        seed = in.readLong();
+        startedAt = in.readLong();
+        distance = in.readInt();
+        keyframeInterval = in.readInt();
+        int lanes = in.readInt();
+        for (int lane = 0; lane < lanes; lane++) {
+            names.add(in.readUTF());
+            species.add(Equine.Species.values()[in.readByte()]);
+            colors.add(new Color(in.readInt(), true));
+            velocities.add(in.readDouble());
+            gearMasks.add(in.readInt());
+            icons.add(in.readUTF());
+        }
+        units = new long[lanes];
+        stumbled = new boolean[lanes];
+    }
+
+    /**
+     * Maps a recording for reading.
+     *
+     * @param file the recording
+     * @return the recording, positioned before its first tick
+     * @throws IOException if the file cannot be read or is not a finished recording
+     */
+    public static CompetitionRecording open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CompetitionRecording(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return when the competition started, in milliseconds since the epoch
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public int getLanes() {
+        return units.length;
+    }
+
+    /**
+     * @return the number of ticks the competition ran
+     */
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * @return the lane of the winner, -1 if every equine stumbled, or CompetitionRecorder.ABANDONED
+     */
+    public int getWinnerLane() {
+        return winnerLane;
+    }
+
+    /**
+     * @return the size of the recording in bytes
+     */
+    public int getSize() {
+        return data.limit();
+    }
+
+    /**
+     * Creates equines matching the recorded field, in lane order.
+     *
+     * @return new equines with the recorded names, species, colours, velocities, gear and icons
+     */
+    public List<Equine> createField() {
+        List<Equine> field = new ArrayList<>();
+        for (int lane = 0; lane < units.length; lane++) {
+            Set<String> gear = new HashSet<>();
+            for (Equine.Gear item : Equine.Gear.values()) {
+                if ((gearMasks.get(lane) & item.getMask()) != 0) {
+                    gear.add(item.getName());
+                }
+            }
+            field.add(new Equine(names.get(lane), species.get(lane), colors.get(lane), velocities.get(lane), gear,
+                    icons.get(lane)));
+        }
+        return field;
+    }
+
+    /**
+     * Fills a frame with the positions after a tick.
+     *
+     * @param tick  the tick, from 0 for the start to getTickCount()
+     * @param frame the frame to fill, with one lane per equine in the recording
+     */
+    public void readFrame(long tick, CompetitionFrame frame) {
+        if (tick < 0 || tick > tickCount) {
+            throw new IllegalArgumentException("Tick " + tick + " is outside 0 to " + tickCount);
+        }
+        if (cursorTick < 0 || tick < cursorTick || tick / keyframeInterval > cursorTick / keyframeInterval) {
+            int keyframe = (int) (tick / keyframeInterval);
+            cursor = keyframeOffsets[keyframe];
+            readKeyframe();
+            cursorTick = (long) keyframe * keyframeInterval;
+        }
+        while (cursorTick < tick) {
+            cursorTick++;
+            if (cursorTick % keyframeInterval == 0) {
+                readKeyframe();
+            } else {
+                readChanges();
+            }
+        }
+        for (int lane = 0; lane < units.length; lane++) {
+            frame.set(lane, (double) units[lane] / CompetitionRecorder.UNITS_PER_DISTANCE, stumbled[lane]);
+        }
+        frame.setTick(tick);
+    }
+
+    private void readKeyframe() {
+        for (int lane = 0; lane < units.length; lane++) {
+            long value = readVarint();
+            units[lane] = value >>> 1;
+            stumbled[lane] = (value & 1) != 0;
+        }
+    }
+
+    private void readChanges() {
+        int changed = (int) readVarint();
+        int lane = -1;
+        for (int i = 0; i < changed; i++) {
+            lane += (int) readVarint() + 1;
+            long value = readVarint();
+            units[lane] += value >>> 1;
+            stumbled[lane] = (value & 1) != 0;
+        }
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data.get(cursor++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Prints a summary of a recording and the positions at one tick, then times seeks to
+     * random ticks.
+     *
+     * Usage: java CompetitionRecording file [tick]
+     */
+    public static void main(String[] args) throws IOException {
+        CompetitionRecording recording = open(Paths.get(args[0]));
+        long tick = args.length > 1 ? Long.parseLong(args[1]) : recording.getTickCount();
+        System.out.printf("Seed %d, %d lanes, %d ticks, %d bytes (%.1f bytes per tick), winner lane %d%n",
+                recording.getSeed(), recording.getLanes(), recording.getTickCount(), recording.getSize(),
+                (double) recording.getSize() / Math.max(recording.getTickCount(), 1), recording.getWinnerLane());
+
+        CompetitionFrame frame = new CompetitionFrame(recording.getLanes());
+        recording.readFrame(tick, frame);
+        List<Equine> field = recording.createField();
+        for (int lane = 0; lane < frame.size(); lane++) {
+            System.out.printf("Tick %d, lane %d: %s at %.2f%s%n", tick, lane, field.get(lane).getEquineName(),
+                    frame.getDistanceTraveled(lane), frame.hasStumbled(lane) ? " (stumbled)" : "");
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        int seeks = 100_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < seeks; i++) {
+            recording.readFrame(random.nextInt(recording.getTickCount() + 1), frame);
+        }
+        System.out.printf("Seek to a random tick: %.0f ns%n", (System.nanoTime() - start) / (double) seeks);
+    }
+}
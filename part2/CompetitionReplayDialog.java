@@ -0,0 +1,122 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Plays back a recorded competition at normal speed or ten times faster, with a slider that
+ * jumps straight to any tick. Frames are decoded from the recording on the event thread and
+ * drawn by the same RaceTrackPanel as a live competition.
+ */
+public class CompetitionReplayDialog extends JDialog {
+    private static final int[] SPEEDS = {1, 10};
+
+    private final CompetitionRecording recording;
+    private final long tickMillis;
+    private final FrameExchanger frames;
+    private final RaceTrackPanel trackPanel;
+    private final JSlider tickSlider;
+    private final JLabel tickLabel = new JLabel();
+    private final JButton playButton = new JButton("Play");
+    private final Timer timer;
+    private long tick;
+    private boolean movingSlider;
+
+    /**
+     * @param owner      the window the dialog belongs to
+     * @param recording  the competition to replay
+     * @param tickMillis the time between two ticks at normal speed
+     */
+    public CompetitionReplayDialog(Frame owner, CompetitionRecording recording, long tickMillis) {
+        super(owner, "Replay of competition " + recording.getSeed(), false);
+        this.recording = recording;
+        this.tickMillis = tickMillis;
+
+        List<Equine> field = recording.createField();
+        frames = new FrameExchanger(field.size());
+        trackPanel = new RaceTrackPanel(field, recording.getDistance(), frames);
+        timer = new Timer((int) tickMillis, e -> advance());
+
+        tickSlider = new JSlider(0, recording.getTickCount(), 0);
+        tickSlider.addChangeListener(e -> {
+            if (!movingSlider) {
+                showTick(tickSlider.getValue());
+            }
+        });
+
+        JComboBox<String> speedBox = new JComboBox<>();
+        for (int speed : SPEEDS) {
+            speedBox.addItem(speed + "x");
+        }
+        speedBox.addActionListener(e -> setSpeed(SPEEDS[speedBox.getSelectedIndex()]));
+        playButton.addActionListener(e -> togglePlayback());
+
+        JPanel controls = new JPanel(new BorderLayout(10, 0));
+        JPanel buttons = new JPanel(new FlowLayout());
+        buttons.add(playButton);
+        buttons.add(speedBox);
+        buttons.add(tickLabel);
+        controls.add(buttons, BorderLayout.WEST);
+        controls.add(tickSlider, BorderLayout.CENTER);
+        controls.add(new JLabel(describeResult(field)), BorderLayout.EAST);
+
+        add(trackPanel, BorderLayout.CENTER);
+        add(controls, BorderLayout.SOUTH);
+        setSize(1200, Math.max(300, trackPanel.getPreferredSize().height + 120));
+        setLocationRelativeTo(owner);
+        showTick(0);
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+        super.dispose();
+    }
+
+    private void togglePlayback() {
+        if (timer.isRunning()) {
+            timer.stop();
+            playButton.setText("Play");
+        } else {
+            if (tick >= recording.getTickCount()) {
+                showTick(0);
+            }
+            timer.start();
+            playButton.setText("Pause");
+        }
+    }
+
+    private void setSpeed(int speed) {
+        timer.setDelay((int) Math.max(1, tickMillis / speed));
+    }
+
+    private void advance() {
+        if (tick >= recording.getTickCount()) {
+            timer.stop();
+            playButton.setText("Play");
+            return;
+        }
+        showTick(tick + 1);
+    }
+
+    /**
+     * Decodes and draws the positions after a tick, and moves the slider to it.
+     */
+    private void showTick(long newTick) {
+        tick = newTick;
+        recording.readFrame(tick, frames.getWriteFrame());
+        frames.publish();
+        trackPanel.frameReady();
+        movingSlider = true;
+        tickSlider.setValue((int) tick);
+        movingSlider = false;
+        tickLabel.setText("Tick " + tick + " of " + recording.getTickCount());
+    }
+
+    private String describeResult(List<Equine> field) {
+        int winner = recording.getWinnerLane();
+        if (winner >= 0) {
+            return "Won by " + field.get(winner).getEquineName();
+        }
+        return winner == CompetitionRecorder.ABANDONED ? "Abandoned" : "Every equine stumbled";
+    }
+}
@@ -1,85 +1,235 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A bettor with a balance and a history of wagers. Every wager names the race it is on and is
+ * settled or refunded only with that race, so a bettor may hold wagers on several races at once.
+ * Its methods are synchronized, so races running on different threads may place and settle the
+ * same bettor's wagers.
+ */
 public class Equestrian {
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    private final long id;
+    private final WagerLedger ledger;
     private double balance;
-    private List<Wager> wagerHistory;
+    private final List<Wager> wagerHistory;
+    private final List<Wager> openWagers = new ArrayList<>();
+    private final BettorStats stats = new BettorStats();
+    private Leaderboard leaderboard;
     private int victoriesCount = 0;
     public int totalCompetitions = 0;
     public double totalWinnings = 0;
     public double totalLosses = 0;
 
     public Equestrian(double initialBalance) {
+        this(NEXT_ID.getAndIncrement(), initialBalance, null);
+    }
+
+    /**
+     * Creates a bettor whose wagers are also written to a ledger. Settled wagers then live only
+     * in the ledger, and the wager history in memory holds just the wagers still to be settled.
+     *
+     * @param id             the bettor id written to the ledger
+     * @param initialBalance the starting balance
+     * @param ledger         where wagers are recorded, or null to keep the whole history in memory
+     */
+    public Equestrian(long id, double initialBalance, WagerLedger ledger) {
+        this.id = id;
+        this.ledger = ledger;
         this.balance = initialBalance;
-        this.wagerHistory = new ArrayList<>();
+        this.wagerHistory = ledger != null ? openWagers : new ArrayList<>();
     }
 
-    public boolean placeWager(Equine equine, double wagerAmount) {
-        this.totalCompetitions++;
+    /**
+     * Places a wager on an equine at the odds quoted for it now.
+     *
+     * @param raceId      the race the wager is on
+     * @param equine      the equine backed
+     * @param wagerAmount the stake
+     * @return false if the balance does not cover the stake
+     */
+    public synchronized boolean placeWager(long raceId, Equine equine, double wagerAmount) {
         if (balance < wagerAmount) {
             return false;
         }
+        this.totalCompetitions++;
         balance -= wagerAmount;
-        wagerHistory.add(new Wager(equine, wagerAmount));
+        Wager wager = new Wager(raceId, equine, wagerAmount);
+        if (ledger != null) {
+            wager.ledgerIndex = ledger.append(id, equine.getId(), wagerAmount, wager.getWinningProbability());
+        }
+        openWagers.add(wager);
+        if (wagerHistory != openWagers) {
+            wagerHistory.add(wager);
+        }
+        SimulatorMetrics.get().wagerPlaced();
         return true;
     }
 
-    public void incrementVictories() {
+    public synchronized void incrementVictories() {
         this.victoriesCount++;
     }
 
-    public void incrementCompetitions() {
+    public synchronized void incrementCompetitions() {
         this.totalCompetitions++;
     }
 
-    public int getTotalCompetitions() {
+    public synchronized int getTotalCompetitions() {
         return totalCompetitions;
     }
 
-    public int getTotalVictories() {
+    public synchronized int getTotalVictories() {
         return this.victoriesCount;
     }
 
-    public double getTotalLosses() {
+    public synchronized double getTotalLosses() {
         return totalLosses;
     }
 
-    public double getTotalWinnings() {
+    public synchronized double getTotalWinnings() {
         return totalWinnings;
     }
 
-    public void settleWager(Equine winner) {
-        if (!wagerHistory.isEmpty()) {
-            Wager latestWager = wagerHistory.get(wagerHistory.size() - 1);
-            if (latestWager.getEquine().equals(winner)) {
-                latestWager.markAsWon();
-                double winnings = latestWager.calculatePayout();
+    /**
+     * Settles the open wagers on a race, paying winning wagers the given winnings per unit staked
+     * instead of the odds they were placed at, as the pari-mutuel pool does.
+     *
+     * @param raceId          the race that has finished
+     * @param winner          the winning equine, or null if every equine stumbled and every wager is lost
+     * @param winningsPerUnit the winnings paid on each unit staked on the winner
+     * @return the number of wagers settled
+     */
+    public synchronized int settleWager(long raceId, Equine winner, double winningsPerUnit) {
+        for (Wager wager : openWagers) {
+            if (wager.raceId == raceId && winner != null && wager.getEquine().getId() == winner.getId()) {
+                wager.setWinningProbability(winningsPerUnit);
+            }
+        }
+        return settleWager(raceId, winner);
+    }
+
+    /**
+     * Settles the open wagers on a race at the odds they were placed at. Wagers on other races
+     * stay open.
+     *
+     * @param raceId the race that has finished
+     * @param winner the winning equine, or null if every equine stumbled and every wager is lost
+     * @return the number of wagers settled
+     */
+    public synchronized int settleWager(long raceId, Equine winner) {
+        int settled = 0;
+        int kept = 0;
+        for (int i = 0; i < openWagers.size(); i++) {
+            Wager wager = openWagers.get(i);
+            if (wager.raceId != raceId) {
+                openWagers.set(kept++, wager);
+                continue;
+            }
+            settled++;
+            if (winner != null && wager.getEquine().getId() == winner.getId()) {
+                wager.markAsWon();
+                double winnings = wager.calculatePayout();
                 this.victoriesCount++;
-                balance += winnings + latestWager.getWagerAmount();
+                balance += winnings + wager.getWagerAmount();
                 totalWinnings += winnings;
+                stats.record(wager.getWagerAmount(), winnings);
             } else {
-                double losses = latestWager.getWagerAmount();
-                latestWager.markAsLost();
-                totalLosses += losses;
+                wager.markAsLost();
+                totalLosses += wager.getWagerAmount();
+                stats.record(wager.getWagerAmount(), -wager.getWagerAmount());
+            }
+            if (ledger != null && wager.ledgerIndex >= 0) {
+                ledger.setOdds(wager.ledgerIndex, wager.getWinningProbability());
+                ledger.setOutcome(wager.ledgerIndex, wager.isWon() ? WagerLedger.WON : WagerLedger.LOST);
+            }
+        }
+        openWagers.subList(kept, openWagers.size()).clear();
+        if (leaderboard != null && settled > 0) {
+            leaderboard.update(id, stats.getNetWinnings());
+        }
+        return settled;
+    }
+
+    /**
+     * Hands back the stakes of the open wagers on a race that ends without a result, such as
+     * one that was abandoned. Refunded wagers count neither as won nor as lost.
+     *
+     * @param raceId the race whose wagers are void
+     * @return the number of wagers refunded
+     */
+    public synchronized int refundWagers(long raceId) {
+        int refunded = 0;
+        int kept = 0;
+        for (int i = 0; i < openWagers.size(); i++) {
+            Wager wager = openWagers.get(i);
+            if (wager.raceId != raceId) {
+                openWagers.set(kept++, wager);
+                continue;
+            }
+            refunded++;
+            wager.refunded = true;
+            balance += wager.getWagerAmount();
+            totalCompetitions--;
+            if (ledger != null && wager.ledgerIndex >= 0) {
+                ledger.setOutcome(wager.ledgerIndex, WagerLedger.REFUNDED);
             }
         }
+        openWagers.subList(kept, openWagers.size()).clear();
+        return refunded;
+    }
+
+    /**
+     * @return the running figures over this bettor's settled wagers
+     */
+    public BettorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Enters this bettor on a leaderboard, which is then updated after every settlement.
+     */
+    public synchronized void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+        if (leaderboard != null) {
+            leaderboard.update(id, stats.getNetWinnings());
+        }
+    }
+
+    public long getId() {
+        return id;
     }
 
-    public double getBalance() {
+    /**
+     * @return the ledger this bettor's wagers are written to, or null if there is none
+     */
+    public WagerLedger getLedger() {
+        return ledger;
+    }
+
+    public synchronized double getBalance() {
         return balance;
     }
 
+    /**
+     * @return the live wager history; only read it while no race is settling this bettor
+     */
     public List<Wager> getWagerHistory() {
         return wagerHistory;
     }
 
-    public class Wager {
+    public static class Wager {
+        private final long raceId;
         private final Equine equine;
         private final double wagerAmount;
         private boolean won;
+        private boolean refunded;
         private double winningProbability;
+        private long ledgerIndex = -1;
 
-        public Wager(Equine equine, double wagerAmount) {
+        public Wager(long raceId, Equine equine, double wagerAmount) {
+            this.raceId = raceId;
             this.equine = equine;
             this.wagerAmount = wagerAmount;
             this.won = false;
@@ -98,6 +248,13 @@ public class Equestrian {
             return won ? wagerAmount * winningProbability : 0;
         }
 
+        /**
+         * @return the race the wager is on
+         */
+        public long getRaceId() {
+            return raceId;
+        }
+
         public Equine getEquine() {
             return equine;
         }
@@ -110,10 +267,24 @@ public class Equestrian {
             return won;
         }
 
+        /**
+         * @return whether the stake was handed back because the race ended without a result
+         */
+        public boolean isRefunded() {
+            return refunded;
+        }
+
         public double getWinningProbability() {
             return winningProbability;
         }
 
+        /**
+         * @return the index of this wager's ledger record, or -1 if it was not recorded
+         */
+        public long getLedgerIndex() {
+            return ledgerIndex;
+        }
+
         public void setWinningProbability(double winningProbability) {
             this.winningProbability = winningProbability;
         }
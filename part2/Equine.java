@@ -1,10 +1,82 @@
 import java.awt.Color;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Equine {
     public enum Species { ARABIAN, THOROUGHBRED, CLYDESDALE }
 
+    /**
+     * Gear an equine can wear, each multiplying its base velocity.
+     */
+    public enum Gear {
+        SADDLE(1.3, "saddle"),
+        HORSESHOES(1.2, "horseshoes"),
+        BRIDLE(1.1, "bridle");
+
+        private final double multiplier;
+        private final String name;
+
+        Gear(double multiplier, String name) {
+            this.multiplier = multiplier;
+            this.name = name;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public int getMask() {
+            return 1 << ordinal();
+        }
+
+        /**
+         * @return the name used for this gear in the string API
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Looks up gear by name, ignoring case.
+         *
+         * @param name the gear name, e.g. "saddle"
+         * @return the matching gear, or null if the name is not a known item
+         */
+        public static Gear parse(String name) {
+            for (Gear gear : values()) {
+                if (gear.name.equalsIgnoreCase(name)) {
+                    return gear;
+                }
+            }
+            return null;
+        }
+
+        private static Gear require(String name) {
+            Gear gear = parse(name);
+            if (gear == null) {
+                throw new IllegalArgumentException("Unknown gear: " + name);
+            }
+            return gear;
+        }
+    }
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+    private static final double[] GEAR_MULTIPLIERS = new double[1 << Gear.values().length];
+
+    static {
+        for (int mask = 0; mask < GEAR_MULTIPLIERS.length; mask++) {
+            double multiplier = 1;
+            for (Gear gear : Gear.values()) {
+                if ((mask & gear.getMask()) != 0) {
+                    multiplier *= gear.getMultiplier();
+                }
+            }
+            GEAR_MULTIPLIERS[mask] = multiplier;
+        }
+    }
+
+    private final int id;
     private String equineName;
     private Species species;
     private Color equineColor;
@@ -12,11 +84,15 @@ public class Equine {
     private double distanceTraveled;
     private boolean stumbled;
     private String icon;
-    private Set<String> gear;
+    private int gearMask;
+    private double velocityWithGear;
     private int victoriesCount = 0;
     private int competitionsCount = 0;
+    // NaN until the field is priced; a quote of 0 is a real price with no winnings.
+    private double quotedOdds = Double.NaN;
 
     public Equine(String equineName, Species species, Color equineColor, double baseVelocity, Set<String> gear, String icon) {
+        this.id = NEXT_ID.getAndIncrement();
         this.equineName = equineName;
         this.species = species;
         this.equineColor = equineColor;
@@ -24,7 +100,39 @@ public class Equine {
         this.distanceTraveled = 0.0;
         this.stumbled = false;
         this.icon = icon;
-        this.gear = new HashSet<>(gear);
+        for (String item : gear) {
+            addGear(item);
+        }
+        updateVelocityWithGear();
+    }
+
+    /**
+     * Makes equines created from now on take ids above the given one, so they are never confused
+     * with an equine recorded in an earlier session.
+     *
+     * @param highestUsed the highest id already in use
+     */
+    public static void reserveIds(int highestUsed) {
+        NEXT_ID.accumulateAndGet(highestUsed + 1, Math::max);
+    }
+
+    /**
+     * Restores an equine saved with the given id, so its wagers and records keep referring to it.
+     * Ids handed to equines created later start above it.
+     */
+    Equine(int id, String equineName, Species species, Color equineColor, double baseVelocity, int gearMask, String icon,
+           int competitionsCount, int victoriesCount) {
+        this.id = id;
+        reserveIds(id);
+        this.equineName = equineName;
+        this.species = species;
+        this.equineColor = equineColor;
+        this.baseVelocity = baseVelocity;
+        this.icon = icon;
+        this.gearMask = gearMask;
+        this.competitionsCount = competitionsCount;
+        this.victoriesCount = victoriesCount;
+        updateVelocityWithGear();
     }
 
     public void incrementVictories() {
@@ -35,12 +143,23 @@ public class Equine {
         this.competitionsCount++;
     }
 
+    public int getVictoriesCount() {
+        return victoriesCount;
+    }
+
+    public int getCompetitionsCount() {
+        return competitionsCount;
+    }
+
     @Override
     public String toString() {
         return equineName + " Winning Probability: " + this.getWinningProbability();
     }
 
     public double getWinningProbability() {
+        if (!Double.isNaN(quotedOdds)) {
+            return quotedOdds;
+        }
         if (competitionsCount == 0 || victoriesCount == 0) {
             return 1 / (0.01);
         } else {
@@ -48,37 +167,51 @@ public class Equine {
         }
     }
 
+    /**
+     * Sets the payout multiplier priced for the current field, used instead of the win history.
+     *
+     * @param quotedOdds winnings per unit staked, or NaN to fall back to the win history
+     */
+    public void setQuotedOdds(double quotedOdds) {
+        this.quotedOdds = quotedOdds;
+    }
+
+    /**
+     * Puts on gear by name.
+     *
+     * @param item the gear name, e.g. "saddle"
+     * @throws IllegalArgumentException if the name is not known gear
+     */
     public void addGear(String item) {
-        gear.add(item);
+        addGear(Gear.require(item));
+    }
+
+    public void addGear(Gear gear) {
+        gearMask |= gear.getMask();
+        updateVelocityWithGear();
     }
 
     public double getBaseVelocity() {
         return this.baseVelocity;
     }
 
+    /**
+     * Returns the base velocity multiplied by all gear worn. The value is worked out when the
+     * gear changes, not on every call.
+     *
+     * @return the effective velocity
+     */
     public double calculateVelocityWithGear() {
-        double velocity = baseVelocity;
-        for (String item : gear) {
-            switch (item.toLowerCase()) {
-                case "saddle":
-                    velocity *= 1.3;
-                    break;
-                case "horseshoes":
-                    velocity *= 1.2;
-                    break;
-                case "bridle":
-                    velocity *= 1.1;
-                    break;
-                default:
-                    break;
-            }
-        }
-        return velocity;
+        return velocityWithGear;
+    }
+
+    private void updateVelocityWithGear() {
+        velocityWithGear = baseVelocity * GEAR_MULTIPLIERS[gearMask];
     }
 
     public void compete(double competitionDistance) {
         if (!stumbled) {
-            distanceTraveled += competitionDistance / 15 * calculateVelocityWithGear();
+            distanceTraveled += competitionDistance / 15 * velocityWithGear;
             if (distanceTraveled >= competitionDistance) {
                 distanceTraveled = competitionDistance;
             }
@@ -97,6 +230,13 @@ public class Equine {
         return distanceTraveled;
     }
 
+    /**
+     * @return a number identifying this equine in wager records
+     */
+    public int getId() {
+        return id;
+    }
+
     public String getIcon() {
         return icon;
     }
@@ -135,10 +275,35 @@ public class Equine {
     }
 
     public Set<String> getGear() {
-        return new HashSet<>(gear);
+        Set<String> names = new HashSet<>();
+        for (Gear gear : Gear.values()) {
+            if (hasGear(gear)) {
+                names.add(gear.getName());
+            }
+        }
+        return names;
+    }
+
+    public boolean hasGear(Gear gear) {
+        return (gearMask & gear.getMask()) != 0;
     }
 
+    public int getGearMask() {
+        return gearMask;
+    }
+
+    /**
+     * Takes off gear by name.
+     *
+     * @param item the gear name, e.g. "saddle"
+     * @throws IllegalArgumentException if the name is not known gear
+     */
     public void removeGear(String item) {
-        gear.remove(item);
+        removeGear(Gear.require(item));
+    }
+
+    public void removeGear(Gear gear) {
+        gearMask &= ~gear.getMask();
+        updateVelocityWithGear();
     }
 }
\ No newline at end of file
@@ -1,29 +1,179 @@
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.regex.Pattern;
 
 public class EquineRacingSimulator {
+    private static final String TITLE = "Equine Racing Simulator";
+    private static final long TICK_MILLIS = 100;
+    private static final long FRAME_MILLIS = 40;
+    private static final int LEADERBOARD_SIZE = 10;
     private JFrame mainFrame;
     private CardLayout cardLayoutManager;
     private JPanel cardContainer, configurationPanel, competitionPanel, competitionControlPanel;
+    private RaceTrackPanel raceTrackPanel;
+    private FrameExchanger frameExchanger;
     private List<Equine> participants = new ArrayList<>();
     private List<Equestrian> bettors = new ArrayList<>();
     private int competitionDistance = 500;
     private JButton beginCompetitionButton;
-    private Thread competitionThread;
+    private TickScheduler competitionScheduler;
+    private boolean restarting;
+    // Wagers and pools are only taken between competitions.
+    private boolean competitionRunning;
+    private RaceEngine competition;
+    // Wagers placed now are on the next competition to start.
+    private long upcomingRaceId = RaceEngine.newRaceId();
     private boolean participantsReady = false;
     private boolean bettorsReady = false;
+    // As sure of every price as two million independent races, usually after far fewer.
+    private final AdaptiveOddsEngine oddsEngine = new AdaptiveOddsEngine(0.0007, 2_000_000, 500);
+    private final SplittableRandom seedSource = new SplittableRandom(Long.getLong("equine.seed", System.nanoTime()));
+    private final WagerLedger wagerLedger = openWagerLedger();
+    private final boolean pariMutuel = "parimutuel".equalsIgnoreCase(System.getProperty("equine.betting"));
+    private final double takeoutRate = Double.parseDouble(System.getProperty("equine.takeout", "0.15"));
+    private PariMutuelPool wagerPool;
+    private SwingWorker<Void, Void> pendingQuote;
+    private final SettlementEngine settlementEngine = new SettlementEngine();
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final EventStream<CompetitionEvent> competitionEvents =
+            new EventStream<>(event -> event.getType() == CompetitionEvent.Type.MOVED);
+    private final Path recordingDirectory = openRecordingDirectory();
+    private CompetitionRecorder competitionRecorder;
+    private final EquineRegistry equineRegistry = openEquineRegistry();
 
-    public EquineRacingSimulator() throws IOException {
+    public EquineRacingSimulator() {
+        competitionEvents.subscribe(new ResultSubscriber());
+        openEventLog();
         setupUserInterface();
     }
 
+    /**
+     * Opens the equine registry in the folder named by the equine.registry system property.
+     *
+     * @return the registry, or null if it cannot be opened, in which case equines are not kept
+     */
+    private static EquineRegistry openEquineRegistry() {
+        String path = System.getProperty("equine.registry", "registry");
+        if (path.isEmpty()) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            EquineRegistry registry = EquineRegistry.open(Paths.get(path));
+            System.out.printf("Loaded %d equines from %s in %.1f ms%n", registry.size(), path, (System.nanoTime() - start) / 1e6);
+            return registry;
+        } catch (IOException e) {
+            System.err.println("Could not open equine registry " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves the details and records of equines to the registry, if there is one.
+     */
+    private void saveToRegistry(List<Equine> equines) {
+        if (equineRegistry == null) {
+            return;
+        }
+        try {
+            equineRegistry.saveAll(equines);
+        } catch (IOException e) {
+            System.err.println("Could not save equines to the registry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the folder named by the equine.cache system property, where scaled copies of the
+     * background are kept between launches.
+     *
+     * @return the folder, or null if nothing is to be cached
+     */
+    private static Path openCacheDirectory() {
+        String path = System.getProperty("equine.cache", "cache");
+        if (path.isEmpty()) {
+            return null;
+        }
+        try {
+            return Files.createDirectories(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("Could not create cache folder " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the folder named by the equine.recordings system property, where every competition
+     * is recorded for replay.
+     *
+     * @return the folder, or null if competitions are not to be recorded
+     */
+    private static Path openRecordingDirectory() {
+        String path = System.getProperty("equine.recordings", "recordings");
+        if (path.isEmpty()) {
+            return null;
+        }
+        try {
+            return Files.createDirectories(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("Could not create recording folder " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the competition events to the file named by the equine.events system property, if set.
+     */
+    private void openEventLog() {
+        String path = System.getProperty("equine.events");
+        if (path == null) {
+            return;
+        }
+        try {
+            competitionEvents.subscribe(new EventLog<CompetitionEvent>(Files.newBufferedWriter(Paths.get(path)),
+                    event -> event.getType() == CompetitionEvent.Type.ENDED));
+        } catch (IOException e) {
+            System.err.println("Could not open event log " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the wager ledger named by the equine.ledger system property. Equines created from now
+     * on get ids above those the ledger already refers to.
+     *
+     * @return the ledger, or null if it cannot be opened, in which case wagers are only kept in memory
+     */
+    private static WagerLedger openWagerLedger() {
+        String path = System.getProperty("equine.ledger", "wagers.ledger");
+        try {
+            WagerLedger ledger = WagerLedger.open(Paths.get(path));
+            Equine.reserveIds(ledger.getMaxEquineId());
+            return ledger;
+        } catch (IOException e) {
+            System.err.println("Could not open wager ledger " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Creates a styled button with the specified text and action.
      *
@@ -49,19 +199,29 @@ public class EquineRacingSimulator {
     }
 
     /**
-     * Sets up the user interface of the application.
-     *
-     * @throws IOException if an I/O error occurs while loading the background image
+     * Sets up the user interface of the application. The window is shown straight away and the
+     * background picture is loaded behind it; both moments are printed, timed from JVM start.
      */
-    private void setupUserInterface() throws IOException {
-        mainFrame = new JFrame("Equine Racing Simulator");
+    private void setupUserInterface() {
+        mainFrame = new JFrame(TITLE);
         mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         mainFrame.setSize(1200, 460);
 
-        Image backgroundImage = ImageIO.read(getClass().getResource("/background.jpg"));
-        Image scaledImage = backgroundImage.getScaledInstance(mainFrame.getWidth(), mainFrame.getHeight(), Image.SCALE_SMOOTH);
-        JLabel background = new JLabel(new ImageIcon(scaledImage));
-        background.setLayout(new BorderLayout());
+        BackgroundPanel background = new BackgroundPanel("/background.jpg", openCacheDirectory());
+        background.setReadyListener(fromDisk -> {
+            long millis = ManagementFactory.getRuntimeMXBean().getUptime();
+            SimulatorMetrics.get().setBackgroundShownMillis(millis);
+            System.out.println("Background shown " + millis + " ms after start"
+                    + (fromDisk ? " (from the disk cache)" : " (decoded and scaled)"));
+        });
+        mainFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                long millis = ManagementFactory.getRuntimeMXBean().getUptime();
+                SimulatorMetrics.get().setWindowShownMillis(millis);
+                System.out.println("Window shown " + millis + " ms after start");
+            }
+        });
 
         mainFrame.setContentPane(background);
 
@@ -126,6 +286,12 @@ public class EquineRacingSimulator {
         constraints.gridy = 2;
         panel.add(beginCompetitionButton, constraints);
 
+        JButton replayButton = createButton("Replay Race", this::displayReplay);
+        constraints.gridx = 0;
+        constraints.gridy = 3;
+        constraints.gridwidth = 2;
+        panel.add(replayButton, constraints);
+
         return panel;
     }
 
@@ -139,13 +305,7 @@ public class EquineRacingSimulator {
     }
 
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                new EquineRacingSimulator();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        });
+        SwingUtilities.invokeLater(EquineRacingSimulator::new);
     }
 
     /**
@@ -153,6 +313,10 @@ public class EquineRacingSimulator {
      */
     private void setupParticipants() {
         if (!participantsReady) {
+            if (equineRegistry != null && equineRegistry.size() >= 2 && chooseFieldFromRegistry()) {
+                participantsReady = true;
+                return;
+            }
             String numParticipantsStr = JOptionPane.showInputDialog(mainFrame, "Enter the number of equines:");
             if (numParticipantsStr != null && !numParticipantsStr.isEmpty()) {
                 try {
@@ -203,6 +367,49 @@ public class EquineRacingSimulator {
         }
     }
 
+    /**
+     * Lets the user pick the field from the equines in the registry, searching by name.
+     *
+     * @return true if a field of 2 to 4 equines was chosen, false if the user would rather enter new equines
+     */
+    private boolean chooseFieldFromRegistry() {
+        EquineTableModel model = new EquineTableModel(equineRegistry.getEquines());
+        JTable table = new JTable(model);
+        TableRowSorter<EquineTableModel> sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+
+        JTextField searchField = new JTextField(20);
+        searchField.addActionListener(e -> sorter.setRowFilter(searchField.getText().isEmpty() ? null
+                : RowFilter.regexFilter("(?i)" + Pattern.quote(searchField.getText()), 0)));
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search by name (press Enter):"));
+        searchPanel.add(searchField);
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(700, 300));
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(searchPanel, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        Object[] options = {"Race Selected", "Enter New Equines"};
+        while (true) {
+            int choice = JOptionPane.showOptionDialog(mainFrame, panel, "Choose 2-4 Equines from the Registry",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+            if (choice != 0) {
+                return false;
+            }
+            int[] rows = table.getSelectedRows();
+            if (rows.length >= 2 && rows.length <= 4) {
+                for (int row : rows) {
+                    participants.add(model.getEquine(table.convertRowIndexToModel(row)));
+                }
+                return true;
+            }
+            JOptionPane.showMessageDialog(mainFrame, "Select from 2-4 equines", "Input Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     /**
      * Gets the details of a participant (equine) from user input.
      *
@@ -220,6 +427,9 @@ public class EquineRacingSimulator {
         JCheckBox saddleCheckbox = new JCheckBox("Saddle");
         JCheckBox horseshoeCheckbox = new JCheckBox("Horseshoe");
         JCheckBox bridleCheckbox = new JCheckBox("Bridle");
+        saddleCheckbox.setActionCommand(Equine.Gear.SADDLE.getName());
+        horseshoeCheckbox.setActionCommand(Equine.Gear.HORSESHOES.getName());
+        bridleCheckbox.setActionCommand(Equine.Gear.BRIDLE.getName());
 
         JPanel gearPanel = new JPanel(new GridLayout(1, 3));
         gearPanel.add(saddleCheckbox);
@@ -302,7 +512,9 @@ public class EquineRacingSimulator {
                 return null;
             }
 
-            return new Equine(name, species, Color.GRAY, velocityValue, gear, selectedIcon);
+            Equine equine = new Equine(name, species, Color.GRAY, velocityValue, gear, selectedIcon);
+            saveToRegistry(List.of(equine));
+            return equine;
         }
         return null;
     }
@@ -325,14 +537,14 @@ public class EquineRacingSimulator {
     /**
      * Gets the selected gear from the checkboxes.
      *
-     * @param gearCheckboxes the checkboxes representing the gear options
+     * @param gearCheckboxes the checkboxes representing the gear options, with the gear name as action command
      * @return a set of selected gear
      */
     private Set<String> getSelectedGear(JCheckBox... gearCheckboxes) {
         Set<String> gear = new HashSet<>();
         for (JCheckBox checkbox : gearCheckboxes) {
             if (checkbox.isSelected()) {
-                gear.add(checkbox.getText().toLowerCase());
+                gear.add(checkbox.getActionCommand());
             }
         }
         return gear;
@@ -348,8 +560,12 @@ public class EquineRacingSimulator {
                 try {
                     int numBettors = Integer.parseInt(numBettorsStr);
                     if (numBettors >=2 && numBettors <=5) {
+                        // Bettors of earlier sessions keep their ids in the ledger; new ones follow them.
+                        long firstId = wagerLedger != null ? wagerLedger.getMaxBettorId() + 1 : 1;
                         for (int i = 0; i < numBettors; i++) {
-                            bettors.add(new Equestrian(1000));
+                            Equestrian bettor = new Equestrian(firstId + i, 1000, wagerLedger);
+                            bettor.setLeaderboard(leaderboard);
+                            bettors.add(bettor);
                         }
                     } else {
                         JOptionPane.showMessageDialog(mainFrame, "Input must be from 2-5");
@@ -374,14 +590,8 @@ public class EquineRacingSimulator {
         competitionPanel.setOpaque(false);
         competitionPanel.removeAll();
 
-        JPanel raceTrackPanel = new JPanel(new BorderLayout()) {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                setOpaque(false);
-                drawRaceTrack(g);
-            }
-        };
+        frameExchanger = new FrameExchanger(participants.size());
+        raceTrackPanel = new RaceTrackPanel(participants, competitionDistance, frameExchanger);
 
         competitionPanel.add(raceTrackPanel, BorderLayout.CENTER);
 
@@ -392,50 +602,6 @@ public class EquineRacingSimulator {
         competitionPanel.repaint();
     }
 
-    /**
-     * Draws the race track on the provided Graphics object.
-     *
-     * @param g the Graphics object to draw on
-     */
-    private void drawRaceTrack(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
-
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);int panelWidth = competitionPanel.getWidth();
-        int trackHeight = 50;
-        int startY = (competitionPanel.getHeight() - (trackHeight * participants.size())) / 2;
-        int spaceBetweenTracks = 10;
-    
-        Stroke dotted = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 0, new float[]{9}, 0);
-        g2d.setStroke(dotted);
-    
-        for (int i = 0; i < participants.size(); i++) {
-            int laneY = startY + i * (trackHeight + spaceBetweenTracks);
-            g2d.setColor(new Color(0, 0, 0, 0));
-            g2d.fillRect(50, laneY, panelWidth - 100, trackHeight);
-    
-            g2d.setColor(Color.BLACK);
-            g2d.drawRect(50, laneY, panelWidth - 100, trackHeight);
-    
-            Equine participant = participants.get(i);
-            int participantX = (int) ((panelWidth - 100) * (participant.getDistanceTraveled() / (double) competitionDistance)) + 50;
-            g2d.setFont(new Font("Arial", Font.BOLD, 20));
-            String participantText = participant.getIcon() + " - " + participant.getEquineName();
-            if (participant.hasStumbled()) {
-                participantText = "❌";
-            }
-            g2d.drawString(participantText, participantX, laneY + trackHeight / 2);
-        }
-    
-        if (participants.size() > 0) {
-            g2d.drawRect(50, startY, panelWidth - 100, participants.size() * (trackHeight + spaceBetweenTracks) - spaceBetweenTracks);
-        }
-        int preferredHeight = calculatePanelHeight();
-        Dimension newSize = new Dimension(competitionPanel.getWidth(), preferredHeight);
-        competitionPanel.setPreferredSize(newSize);
-        competitionPanel.revalidate();
-        g2d.dispose();
-    }
-    
     /**
      * Creates the competition control panel with buttons for various actions.
      *
@@ -454,149 +620,278 @@ public class EquineRacingSimulator {
         JButton viewBettorsInfoButton = createControlButton("View Equestrians Info", this::displayBettorsInfo);
         panel.add(viewBettorsInfoButton);
     
+        JButton viewLeaderboardButton = createControlButton("View Leaderboard", this::displayLeaderboard);
+        panel.add(viewLeaderboardButton);
+    
         JButton placeWagersButton = createControlButton("Place Wagers", this::conductWagers);
         panel.add(placeWagersButton);
     
         JButton raceAgainButton = createControlButton("Race Again", this::startCompetition);
         panel.add(raceAgainButton);
     
-        return panel;
-    }
+        JButton fastForwardButton = createControlButton("Fast Forward", this::fastForwardCompetition);
+        panel.add(fastForwardButton);
+
+        JButton replayButton = createControlButton("Replay Race", this::displayReplay);
+        panel.add(replayButton);
     
-    /**
-     * Calculates the preferred height of the competition panel based on the number of participants.
-     *
-     * @return the calculated preferred height
-     */
-    private int calculatePanelHeight() {
-        int trackHeight = 50;
-        int spaceBetweenTracks = 10;
-        int padding = 20;
-        int totalHeight = (trackHeight + spaceBetweenTracks) * participants.size() + padding;
-        return totalHeight;
+        return panel;
     }
     
     /**
      * Starts the competition by creating the competition panel and simulating the race.
      */
     private void startCompetition() {
+        if (restarting) {
+            return;
+        }
+        if (competitionScheduler != null) {
+            // The participants are reset only once the previous competition's last tick is done with them.
+            TickScheduler previous = competitionScheduler;
+            CompetitionRecorder recorder = competitionRecorder;
+            RaceEngine abandoned = competition;
+            competitionScheduler = null;
+            competitionRecorder = null;
+            restarting = true;
+            previous.stop(() -> {
+                finishRecording(recorder, CompetitionRecorder.ABANDONED);
+                SwingUtilities.invokeLater(() -> {
+                    refundWagers(abandoned);
+                    restarting = false;
+                    startCompetition();
+                });
+            });
+            return;
+        }
         createCompetitionPanel();
         cardLayoutManager.show(cardContainer, "Race Track");
     
-        for (Equine participant : participants) {
-            participant.resetForNewCompetition();
-            participant.incrementCompetitions();
-        }
-        competitionThread = new Thread(() -> {
-            boolean competitionFinished = false;
-            while (!competitionFinished) {
-                for (Equine participant : participants) {
-                    if (!participant.hasStumbled() && participant.getDistanceTraveled() < competitionDistance) {
-                        if (Math.random() < participant.getBaseVelocity()) {
-                            participant.compete(competitionDistance);
-                        }
-                        if (participant.getDistanceTraveled() >= competitionDistance && !participant.hasStumbled()) {
-                            competitionFinished = true;
-                            JOptionPane.showMessageDialog(mainFrame, "The winner is " + participant.getEquineName(), "Race Finished", JOptionPane.INFORMATION_MESSAGE);
-                            participant.incrementVictories();
-                            settleWagers(participant);
-                            break;
-                        }
-                    }
-    
-                    if (Math.random() < 0.1 * participant.getBaseVelocity() * participant.getBaseVelocity()) {
-                        participant.stumble();
-                    }
-                }
-    
-                boolean allStumbled = participants.stream().allMatch(Equine::hasStumbled);
-                if (allStumbled) {
-                    competitionFinished = true;
-                    JOptionPane.showMessageDialog(mainFrame, "All Equines have stumbled. The race has ended.", "Race Ended", JOptionPane.INFORMATION_MESSAGE);
-                    break;
-                }
-    
-                competitionPanel.repaint();
-    
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
+        if (wagerPool != null) {
+            wagerPool.close();
+        }
+        // Each competition gets its own seed so it can be replayed draw for draw; the title shows it.
+        long competitionSeed = seedSource.nextLong();
+        mainFrame.setTitle(TITLE + " - seed " + competitionSeed);
+        startRecording(competitionSeed);
+        RaceEngine race = new RaceEngine(upcomingRaceId, participants, competitionDistance, settlementEngine,
+                competitionEvents);
+        upcomingRaceId = RaceEngine.newRaceId();
+        race.start(competitionSeed);
+        competition = race;
+        competitionRunning = true;
+        FrameExchanger frames = frameExchanger;
+        CompetitionRecorder recorder = competitionRecorder;
+        competitionScheduler = new TickScheduler("competition", TICK_MILLIS, FRAME_MILLIS);
+        competitionScheduler.start(() -> advanceCompetition(race, frames, recorder), raceTrackPanel::frameReady,
+                () -> {
+                    finishRecording(recorder, participants.indexOf(race.getWinner()));
+                    competitionEvents.publish(CompetitionEvent.ended(race.getTick(), race.getWinner()));
+                }, false);
+    }
+
+    /**
+     * Runs the remaining ticks of the current competition without pausing and shows the result.
+     */
+    private void fastForwardCompetition() {
+        if (competitionScheduler != null) {
+            competitionScheduler.fastForward();
+        }
+    }
+
+    /**
+     * Moves every participant once and publishes the resulting frame for the race track.
+     *
+     * @param race   the current competition
+     * @param frames   where frames of the current competition are published
+     * @param recorder where the current competition is recorded, or null
+     * @return true once a participant has won or every participant has stumbled
+     */
+    private boolean advanceCompetition(RaceEngine race, FrameExchanger frames, CompetitionRecorder recorder) {
+        boolean finished = race.advance();
+        frames.getWriteFrame().capture(participants, race.getTick());
+        recordFrame(recorder, frames.getWriteFrame());
+        frames.publish();
+        return finished;
+    }
+
+    /**
+     * Starts recording the competition about to run, if competitions are recorded. A competition
+     * that cannot be recorded still runs.
+     */
+    private void startRecording(long competitionSeed) {
+        if (recordingDirectory == null) {
+            return;
+        }
+        Path file = recordingDirectory.resolve("competition-" + System.currentTimeMillis() + "-" + competitionSeed + ".eqr");
+        try {
+            competitionRecorder = CompetitionRecorder.create(file, competitionSeed, competitionDistance, participants);
+        } catch (IOException e) {
+            System.err.println("Could not record the competition to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs on the tick thread. A recording that fails is abandoned; later frames are then ignored.
+     */
+    private static void recordFrame(CompetitionRecorder recorder, CompetitionFrame frame) {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.record(frame);
+        } catch (IOException e) {
+            System.err.println("Stopped recording the competition: " + e.getMessage());
+            finishRecording(recorder, CompetitionRecorder.ABANDONED);
+        }
+    }
+
+    /**
+     * Completes a competition's recording. Called on the scheduler's threads once the last tick has run.
+     *
+     * @param recorder   the competition's recorder, or null if it is not recorded
+     * @param winnerLane the lane of the winner, -1 if every participant stumbled, or CompetitionRecorder.ABANDONED
+     */
+    private static void finishRecording(CompetitionRecorder recorder, int winnerLane) {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.finish(winnerLane);
+        } catch (IOException e) {
+            System.err.println("Could not complete the competition recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Names an equine in the wager history: from the current field, else from the registry, else by
+     * its id for an equine of an earlier session that was not kept.
+     */
+    private String getEquineName(Map<Integer, String> fieldNames, int id) {
+        String name = fieldNames.get(id);
+        if (name == null && equineRegistry != null) {
+            Equine saved = equineRegistry.get(id);
+            if (saved != null) {
+                name = saved.getEquineName();
             }
-        });
-    
-        competitionThread.start();
+        }
+        return name != null ? name : "Equine #" + id;
     }
-    
+
+    /**
+     * Lets the user pick a recorded competition and plays it back in its own window.
+     */
+    private void displayReplay() {
+        JFileChooser chooser = new JFileChooser(recordingDirectory != null ? recordingDirectory.toFile() : null);
+        if (chooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            CompetitionRecording recording = CompetitionRecording.open(chooser.getSelectedFile().toPath());
+            new CompetitionReplayDialog(mainFrame, recording, TICK_MILLIS).setVisible(true);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(mainFrame, "Could not open the recording: " + e.getMessage(),
+                    "Replay Race", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     /**
-     * Settles the wagers for each bettor based on the winning participant.
+     * Shows the result and settles the wagers when a competition ends, so the competition loop
+     * only announces the end and never calls into the betting code. Takes one event at a time.
+     */
+    private class ResultSubscriber implements Flow.Subscriber<CompetitionEvent> {
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(CompetitionEvent event) {
+            if (event.getType() == CompetitionEvent.Type.ENDED) {
+                SwingUtilities.invokeLater(() -> announceResult(event.getEquine()));
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            System.err.println("Competition events failed: " + throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    /**
+     * Shows the result of the finished competition and settles the wagers. Runs on the event thread.
      *
-     * @param winner the winning participant
+     * @param winner the winning participant, or null if every participant stumbled
      */
-    private void settleWagers(Equine winner) {
-        for (Equestrian bettor : bettors) {
-            bettor.settleWager(winner);
+    private void announceResult(Equine winner) {
+        if (winner != null) {
+            JOptionPane.showMessageDialog(mainFrame, "The winner is " + winner.getEquineName(), "Race Finished", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(mainFrame, "All Equines have stumbled. The race has ended.", "Race Ended", JOptionPane.INFORMATION_MESSAGE);
         }
+        competitionRunning = false;
+        settleWagers();
+        wagerPool = null;
+        saveToRegistry(participants);
     }
     
     /**
-     * Displays the statistics of each bettor in a dialog.
+     * Settles the wagers for each bettor on the finished competition, at the pool's dividend
+     * when betting is pari-mutuel and at the quoted odds otherwise. Settlement times are kept by
+     * SimulatorMetrics.
      */
-    private void displayStatistics() {
-        JDialog statsDialog = new JDialog(mainFrame, "Competition Statistics", true);
-        statsDialog.setLayout(new BoxLayout(statsDialog.getContentPane(), BoxLayout.Y_AXIS));
-        statsDialog.setSize(500, 300);
-    
-        JTabbedPane tabbedPane = new JTabbedPane();
-        for (Equestrian bettor : bettors) {
-            JPanel bettorStatsPanel = createBettorStatsPanel(bettor);
-            tabbedPane.addTab("Equestrian " + (bettors.indexOf(bettor) + 1), bettorStatsPanel);
+    private void settleWagers() {
+        competition.settle(bettors, wagerPool);
+        if (wagerLedger != null) {
+            wagerLedger.force();
         }
-        statsDialog.add(tabbedPane);
-    
-        statsDialog.setLocationRelativeTo(mainFrame);
-        statsDialog.setVisible(true);
     }
-    
+
     /**
-     * Creates a panel displaying the statistics of a bettor.
+     * Hands back the stakes wagered on a competition that was abandoned before it finished,
+     * together with its pari-mutuel pool.
      *
-     * @param bettor the bettor whose statistics are to be displayed
-     * @return the created bettor statistics panel
+     * @param race the abandoned competition
      */
-    private JPanel createBettorStatsPanel(Equestrian bettor) {
-        JPanel panel = new JPanel(new BorderLayout());
-        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-    
-        int totalCompetitions = bettor.getTotalCompetitions();
-        int totalVictories = bettor.getTotalVictories();
-        double winRate = totalCompetitions > 0 ? (double) totalVictories / totalCompetitions * 100 : 0;
-        double totalWinnings = bettor.getTotalWinnings();
-        double totalLosses = bettor.getTotalLosses();
-        double netAmount = totalWinnings - totalLosses;
-    
-        String[][] data = {
-                {"Number of Victories", String.valueOf(totalVictories)},
-                {"Win Rate (%)", String.format("%.2f", winRate)},
-                {"Total Winnings", String.format("$%.2f", totalWinnings)},
-                {"Total Losses", String.format("$%.2f", totalLosses)},
-                {"Net Amount", String.format("$%.2f", netAmount)}
-        };
-    
-        String[] columnNames = {"Statistic", "Value"};
-    
-        JTable bettorStatsTable = new JTable(data, columnNames);
-        bettorStatsTable.setEnabled(false);
-        bettorStatsTable.setRowHeight(25);
-        bettorStatsTable.getColumnModel().getColumn(0).setPreferredWidth(150);
-        bettorStatsTable.getColumnModel().getColumn(1).setPreferredWidth(100);
-    
-        JScrollPane scrollPane = new JScrollPane(bettorStatsTable);
-        panel.add(scrollPane, BorderLayout.CENTER);
+    private void refundWagers(RaceEngine race) {
+        competitionRunning = false;
+        for (Equestrian bettor : bettors) {
+            bettor.refundWagers(race.getRaceId());
+        }
+        if (wagerPool != null && wagerPool.isClosed()) {
+            wagerPool = null;
+        }
+        if (wagerLedger != null) {
+            wagerLedger.force();
+        }
+    }
     
-        return panel;
+    /**
+     * Displays the statistics of every bettor in one table.
+     */
+    private void displayStatistics() {
+        JDialog statsDialog = new JDialog(mainFrame, "Competition Statistics", true);
+        JTable statsTable = new JTable(new BettorTableModel(bettors,
+                BettorTableModel.Column.EQUESTRIAN, BettorTableModel.Column.VICTORIES, BettorTableModel.Column.WIN_RATE,
+                BettorTableModel.Column.WINNINGS, BettorTableModel.Column.LOSSES, BettorTableModel.Column.NET,
+                BettorTableModel.Column.ROI, BettorTableModel.Column.PROFIT_STD_DEV,
+                BettorTableModel.Column.LONGEST_WIN_STREAK, BettorTableModel.Column.LONGEST_LOSING_STREAK,
+                BettorTableModel.Column.MAX_DRAWDOWN));
+        statsTable.setEnabled(false);
+        statsTable.setRowHeight(25);
+        statsTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+
+        statsDialog.add(new JScrollPane(statsTable));
+        statsDialog.setSize(900, 300);
+        statsDialog.setLocationRelativeTo(mainFrame);
+        statsDialog.setVisible(true);
     }
     
     /**
@@ -621,60 +916,183 @@ public class EquineRacingSimulator {
     }
     
     /**
-     * Displays the wager history of each bettor in a dialog.
+     * Displays the wager history of each bettor in a dialog. With a ledger open, rows are read
+     * from the file as they are shown, including wagers from earlier sessions, and clicking a
+     * column header sorts by it.
      */
     private void displayWagerHistory() {
         JDialog historyDialog = new JDialog(mainFrame, "Wager History", true);
-        String[] columnNames = {"Equestrian", "Equine", "Wager Amount", "Won"};
-        DefaultTableModel model = new DefaultTableModel(columnNames, 0);
-        JTable historyTable = new JTable(model);
-        historyTable.setRowHeight(25);
-    
-        for (Equestrian bettor : bettors) {
-            for (Equestrian.Wager wager : bettor.getWagerHistory()) {
-                model.addRow(new Object[]{
-                        "Equestrian " + (bettors.indexOf(bettor) + 1),
-                        wager.getEquine().getEquineName(),
-                        String.format("$%.2f", wager.getWagerAmount()),
-                        wager.isWon() ? "Yes" : "No"
-                });
+        JTable historyTable;
+        if (wagerLedger != null) {
+            Map<Integer, String> equineNames = new HashMap<>();
+            for (Equine participant : participants) {
+                equineNames.put(participant.getId(), participant.getEquineName());
             }
+            WagerHistoryModel model = new WagerHistoryModel(wagerLedger, id -> getEquineName(equineNames, id));
+            historyTable = new JTable(model);
+            historyTable.getTableHeader().addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    int column = historyTable.columnAtPoint(e.getPoint());
+                    if (column >= 0) {
+                        model.sortBy(historyTable.convertColumnIndexToModel(column));
+                    }
+                }
+            });
+            historyDialog.add(createHistoryFilters(model), BorderLayout.NORTH);
+        } else {
+            String[] columnNames = {"Equestrian", "Equine", "Wager Amount", "Won"};
+            DefaultTableModel model = new DefaultTableModel(columnNames, 0);
+            for (Equestrian bettor : bettors) {
+                for (Equestrian.Wager wager : bettor.getWagerHistory()) {
+                    model.addRow(new Object[]{
+                            "Equestrian " + bettor.getId(),
+                            wager.getEquine().getEquineName(),
+                            String.format("$%.2f", wager.getWagerAmount()),
+                            wager.isRefunded() ? "Refunded" : wager.isWon() ? "Yes" : "No"
+                    });
+                }
+            }
+            historyTable = new JTable(model);
         }
+        historyTable.setRowHeight(25);
     
         JScrollPane scrollPane = new JScrollPane(historyTable);
-        historyDialog.add(scrollPane);
-        historyDialog.setSize(500, 400);
+        historyDialog.add(scrollPane, BorderLayout.CENTER);
+        historyDialog.setSize(600, 400);
         historyDialog.setLocationRelativeTo(mainFrame);
         historyDialog.setVisible(true);
     }
+
+    /**
+     * Creates the outcome and bettor filters shown above the wager history.
+     *
+     * @param model the history table's model
+     * @return the panel holding the filters
+     */
+    private JPanel createHistoryFilters(WagerHistoryModel model) {
+        JComboBox<WagerHistoryModel.OutcomeFilter> outcomeBox = new JComboBox<>(WagerHistoryModel.OutcomeFilter.values());
+        outcomeBox.addActionListener(e -> model.setOutcomeFilter((WagerHistoryModel.OutcomeFilter) outcomeBox.getSelectedItem()));
+
+        JComboBox<String> bettorBox = new JComboBox<>();
+        bettorBox.addItem("All");
+        for (Equestrian bettor : bettors) {
+            bettorBox.addItem("Equestrian " + bettor.getId());
+        }
+        bettorBox.addActionListener(e -> {
+            int selected = bettorBox.getSelectedIndex();
+            model.setBettorFilter(selected <= 0 ? -1 : bettors.get(selected - 1).getId());
+        });
+
+        JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filters.add(new JLabel("Outcome:"));
+        filters.add(outcomeBox);
+        filters.add(new JLabel("Equestrian:"));
+        filters.add(bettorBox);
+        return filters;
+    }
     
     /**
-     * Displays the information of each bettor in a dialog.
+     * Displays the bettors with the highest net winnings, best first.
+     */
+    private void displayLeaderboard() {
+        Map<Long, Equestrian> bettorsById = new HashMap<>();
+        for (Equestrian bettor : bettors) {
+            bettorsById.put(bettor.getId(), bettor);
+        }
+        List<Equestrian> leaders = new ArrayList<>();
+        for (long id : leaderboard.top(LEADERBOARD_SIZE)) {
+            leaders.add(bettorsById.get(id));
+        }
+
+        JDialog leaderboardDialog = new JDialog(mainFrame, "Leaderboard", true);
+        JTable leaderboardTable = new JTable(new BettorTableModel(leaders,
+                BettorTableModel.Column.EQUESTRIAN, BettorTableModel.Column.NET, BettorTableModel.Column.ROI));
+        leaderboardTable.setEnabled(false);
+        leaderboardTable.setRowHeight(25);
+
+        leaderboardDialog.add(new JScrollPane(leaderboardTable));
+        leaderboardDialog.setSize(400, 250);
+        leaderboardDialog.setLocationRelativeTo(mainFrame);
+        leaderboardDialog.setVisible(true);
+    }
+
+    /**
+     * Displays the balance of each bettor in one table.
      */
     private void displayBettorsInfo() {
         JDialog infoDialog = new JDialog(mainFrame, "Equestrians Information", true);
-        JPanel infoPanel = new JPanel();
-        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-        infoPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-    
-        for (Equestrian bettor : bettors) {
-            JPanel bettorPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-            bettorPanel.setBorder(BorderFactory.createTitledBorder("Equestrian " + (bettors.indexOf(bettor) + 1)));
-            JLabel balanceLabel = new JLabel("Balance: $" + String.format("%.2f", bettor.getBalance()));
-            bettorPanel.add(balanceLabel);
-            infoPanel.add(bettorPanel);
-        }
-        JScrollPane scrollPane = new JScrollPane(infoPanel);
-        infoDialog.add(scrollPane);
+        JTable infoTable = new JTable(new BettorTableModel(bettors,
+                BettorTableModel.Column.EQUESTRIAN, BettorTableModel.Column.BALANCE));
+        infoTable.setEnabled(false);
+        infoTable.setRowHeight(25);
+
+        infoDialog.add(new JScrollPane(infoTable));
         infoDialog.setSize(300, 200);
         infoDialog.setLocationRelativeTo(mainFrame);
         infoDialog.setVisible(true);
     }
     
     /**
-     * Conducts the wagers for each bettor by prompting them to select a participant and enter the wager amount.
+     * Prices the field and then prompts each bettor for a wager. Fixed odds are worked out on a
+     * SwingWorker, so the window stays responsive while the odds engine runs, and the wager
+     * dialogs open once the quotes are in. Wagers are only taken between competitions, so a
+     * pool is never opened while the competition it would be settled against is running.
      */
     private void conductWagers() {
+        if (competitionRunning) {
+            JOptionPane.showMessageDialog(mainFrame, "Wagers can only be placed between races.", "Place Wager", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (pariMutuel) {
+            if (wagerPool == null || wagerPool.isClosed()) {
+                wagerPool = new PariMutuelPool(participants, takeoutRate);
+            }
+            wagerPool.quoteField();
+            placeWagers();
+            return;
+        }
+        if (pendingQuote != null) {
+            // Already pricing; the dialogs open when the quotes arrive.
+            return;
+        }
+        List<Equine> field = new ArrayList<>(participants);
+        int distance = competitionDistance;
+        mainFrame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() {
+                oddsEngine.quoteField(field, distance);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                pendingQuote = null;
+                mainFrame.setCursor(Cursor.getDefaultCursor());
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(mainFrame, "Could not price the field: " + e.getCause(),
+                            "Place Wager", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                if (competitionRunning) {
+                    // A competition started while the field was being priced.
+                    return;
+                }
+                placeWagers();
+            }
+        };
+        pendingQuote = worker;
+        worker.execute();
+    }
+
+    /**
+     * Prompts each bettor to select a participant and enter the wager amount, at the odds
+     * already quoted.
+     */
+    private void placeWagers() {
         for (Equestrian bettor : bettors) {
             JComboBox<Equine> participantComboBox = new JComboBox<>(participants.toArray(new Equine[0]));
             JTextField wagerAmountField = new JTextField("100");
@@ -698,8 +1116,11 @@ public class EquineRacingSimulator {
                 }
     
                 Equine selectedParticipant = (Equine) participantComboBox.getSelectedItem();
-                if (!bettor.placeWager(selectedParticipant, wagerAmount)) {
+                if (!bettor.placeWager(upcomingRaceId, selectedParticipant, wagerAmount)) {
                     JOptionPane.showMessageDialog(mainFrame, "Insufficient balance to place wager.", "Error", JOptionPane.ERROR_MESSAGE);
+                } else if (wagerPool != null) {
+                    wagerPool.placeWager(selectedParticipant, wagerAmount);
+                    wagerPool.quoteField();
                 }
             }
         }
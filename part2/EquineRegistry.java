@@ -0,0 +1,264 @@
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps every equine ever entered, with its career record, in a folder on disk.
+ *
+ * The folder holds a snapshot of all equines and a log of the changes since. Registering or
+ * updating an equine appends one record to the log, so saving costs the same however many
+ * equines there are. Once the log holds more records than the snapshot has equines, the
+ * registry writes a fresh snapshot and empties the log; the new snapshot replaces the old one
+ * with an atomic rename, so a crash leaves one or the other.
+ *
+ * Loading reads both files whole and decodes them from memory. Each log record carries a CRC,
+ * and a record cut short by a crash is dropped along with anything after it.
+ */
+public class EquineRegistry implements AutoCloseable {
+    private static final int SNAPSHOT_MAGIC = 0x45515253;
+    private static final int VERSION = 1;
+    private static final int MIN_COMPACTION_RECORDS = 1_024;
+    private static final String SNAPSHOT_FILE = "equines.snapshot";
+    private static final String LOG_FILE = "equines.log";
+
+    private final Path directory;
+    private final Map<Integer, Equine> equines = new LinkedHashMap<>();
+    private FileChannel log;
+    private int logRecords;
+
+    private EquineRegistry(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the registry in a folder, creating the folder if needed.
+     *
+     * @param directory the folder holding the registry
+     * @return the registry with every saved equine loaded
+     * @throws IOException if the files cannot be read or the snapshot is damaged
+     */
+    public static EquineRegistry open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        EquineRegistry registry = new EquineRegistry(directory);
+        registry.load();
+        return registry;
+    }
+
+    /**
+     * @return every equine in the order it was first registered
+     */
+    public synchronized List<Equine> getEquines() {
+        return Collections.unmodifiableList(new ArrayList<>(equines.values()));
+    }
+
+    /**
+     * @param id the equine's id
+     * @return the equine, or null if none is registered with that id
+     */
+    public synchronized Equine get(int id) {
+        return equines.get(id);
+    }
+
+    public synchronized int size() {
+        return equines.size();
+    }
+
+    /**
+     * Adds an equine, or saves the current details and record of one already registered.
+     *
+     * @param equine the equine to save
+     * @throws IOException if the change cannot be written
+     */
+    public synchronized void save(Equine equine) throws IOException {
+        equines.put(equine.getId(), equine);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        writeEquine(out, equine);
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.limit() - 8);
+        record.putInt(0, record.limit() - 8);
+        record.putInt(4, (int) crc.getValue());
+        while (record.hasRemaining()) {
+            log.write(record);
+        }
+        if (++logRecords > Math.max(MIN_COMPACTION_RECORDS, equines.size())) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Saves several equines, e.g. the whole field after a competition.
+     */
+    public synchronized void saveAll(List<Equine> field) throws IOException {
+        for (Equine equine : field) {
+            save(equine);
+        }
+    }
+
+    /**
+     * Writes every equine to a new snapshot and empties the log.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void snapshot() throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * equines.size() + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(equines.size());
+        for (Equine equine : equines.values()) {
+            writeEquine(out, equine);
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        log.truncate(0);
+        logRecords = 0;
+    }
+
+    /**
+     * Flushes the log to disk and closes it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        log.force(false);
+        log.close();
+    }
+
+    private void load() throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+            if (snapshot.remaining() < 12 || snapshot.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(snapshotFile + " is not an equine registry snapshot");
+            }
+            if (snapshot.getInt() != VERSION) {
+                throw new IOException("Unsupported registry version in " + snapshotFile);
+            }
+            int count = snapshot.getInt();
+            for (int i = 0; i < count; i++) {
+                Equine equine = readEquine(snapshot);
+                equines.put(equine.getId(), equine);
+            }
+        }
+
+        Path logFile = directory.resolve(LOG_FILE);
+        ByteBuffer changes = ByteBuffer.wrap(Files.exists(logFile) ? Files.readAllBytes(logFile) : new byte[0]);
+        CRC32 crc = new CRC32();
+        while (changes.remaining() >= 8) {
+            int length = changes.getInt(changes.position());
+            int checksum = changes.getInt(changes.position() + 4);
+            if (length <= 0 || length > changes.remaining() - 8) {
+                break;
+            }
+            crc.reset();
+            crc.update(changes.array(), changes.position() + 8, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            changes.position(changes.position() + 8);
+            Equine equine = readEquine(changes);
+            equines.put(equine.getId(), equine);
+            logRecords++;
+        }
+
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Anything after the last whole record was cut short and is written over.
+        log.truncate(changes.position());
+        log.position(changes.position());
+    }
+
+    private static void writeEquine(DataOutputStream out, Equine equine) throws IOException {
+        Color color = equine.getEquineColor();
+        out.writeInt(equine.getId());
+        writeString(out, equine.getEquineName());
+        out.writeByte(equine.getSpecies().ordinal());
+        out.writeInt(color != null ? color.getRGB() : 0);
+        out.writeDouble(equine.getBaseVelocity());
+        out.writeByte(equine.getGearMask());
+        writeString(out, equine.getIcon());
+        out.writeInt(equine.getCompetitionsCount());
+        out.writeInt(equine.getVictoriesCount());
+    }
+
+    private static Equine readEquine(ByteBuffer in) {
+        int id = in.getInt();
+        String name = readString(in);
+        Equine.Species species = Equine.Species.values()[in.get()];
+        Color color = new Color(in.getInt(), true);
+        double baseVelocity = in.getDouble();
+        int gearMask = in.get();
+        String icon = readString(in);
+        int competitions = in.getInt();
+        int victories = in.getInt();
+        return new Equine(id, name, species, color, baseVelocity, gearMask, icon, competitions, victories);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Fills a registry in a scratch folder and times saving and loading it.
+     *
+     * Usage: java EquineRegistry folder [equines]
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args[0]);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        SplittableRandom random = new SplittableRandom(42);
+        Equine.Species[] species = Equine.Species.values();
+
+        long start = System.nanoTime();
+        try (EquineRegistry registry = open(directory)) {
+            for (int i = 0; i < count; i++) {
+                Equine equine = new Equine("Equine " + i, species[random.nextInt(species.length)], Color.GRAY,
+                        random.nextDouble(), Collections.emptySet(), "🐎");
+                registry.save(equine);
+            }
+            registry.snapshot();
+        }
+        System.out.printf("Saved %d equines in %.1f ms%n", count, (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        try (EquineRegistry registry = open(directory)) {
+            System.out.printf("Loaded %d equines in %.1f ms%n", registry.size(), (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
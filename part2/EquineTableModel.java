@@ -0,0 +1,76 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+/**
+ * A table with one row per equine, showing its details and career record. Cells are read from
+ * the equines when drawn, so a registry of any size opens at once.
+ */
+public class EquineTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"Name", "Species", "Base Velocity", "Gear", "Icon", "Races", "Wins"};
+
+    private final List<Equine> equines;
+
+    /**
+     * @param equines the equines, one per row
+     */
+    public EquineTableModel(List<Equine> equines) {
+        this.equines = equines;
+    }
+
+    /**
+     * @param row a row of the model, not of a sorted view
+     * @return the equine shown in the row
+     */
+    public Equine getEquine(int row) {
+        return equines.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return equines.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 2:
+                return Double.class;
+            case 5:
+            case 6:
+                return Integer.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Equine equine = equines.get(row);
+        switch (column) {
+            case 0:
+                return equine.getEquineName();
+            case 1:
+                return equine.getSpecies().toString();
+            case 2:
+                return equine.getBaseVelocity();
+            case 3:
+                return String.join(", ", equine.getGear());
+            case 4:
+                return equine.getIcon();
+            case 5:
+                return equine.getCompetitionsCount();
+            default:
+                return equine.getVictoriesCount();
+        }
+    }
+}
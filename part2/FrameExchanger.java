@@ -0,0 +1,57 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands competition frames from the competition thread to the Swing event thread without locks.
+ *
+ * Three frames are shared between one writer and one reader: the writer fills its own frame and
+ * swaps it into the middle slot, and the reader swaps its frame for the middle one when a newer
+ * frame has been published. Neither side ever blocks or sees a frame the other is using, and
+ * frames the reader never picked up are simply overwritten.
+ */
+public class FrameExchanger {
+    private static final int INDEX_MASK = 0b11;
+    private static final int FRESH = 0b100;
+
+    private final CompetitionFrame[] frames = new CompetitionFrame[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int writeIndex = 0;
+    private int readIndex = 2;
+
+    /**
+     * @param lanes the number of equines in the competition
+     */
+    public FrameExchanger(int lanes) {
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new CompetitionFrame(lanes);
+        }
+    }
+
+    /**
+     * Returns the frame the writer may fill next. Only call from the writing thread.
+     *
+     * @return the writer's frame
+     */
+    public CompetitionFrame getWriteFrame() {
+        return frames[writeIndex];
+    }
+
+    /**
+     * Publishes the writer's frame and takes back a free one. Only call from the writing thread.
+     */
+    public void publish() {
+        writeIndex = middle.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the most recently published frame. Only call from the reading thread; the frame
+     * stays valid until the next call.
+     *
+     * @return the latest frame
+     */
+    public CompetitionFrame getLatestFrame() {
+        if ((middle.get() & FRESH) != 0) {
+            readIndex = middle.getAndSet(readIndex) & INDEX_MASK;
+        }
+        return frames[readIndex];
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Ranks bettors by net winnings in an indexed binary max-heap.
+ *
+ * The heap records where each bettor sits, so a changed score moves that one entry up or down in
+ * O(log n). The top k are read by walking the heap from the root with a small frontier of
+ * candidates, which costs O(k log k) however many bettors there are.
+ */
+public class Leaderboard {
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private long[] ids = new long[16];
+    private double[] scores = new double[16];
+    private int[] position = new int[16];
+    private int[] heap = new int[16];
+    private int size;
+
+    /**
+     * Sets a bettor's score, adding the bettor if it is new.
+     *
+     * @param bettorId the bettor's id
+     * @param score    the bettor's net winnings
+     */
+    public synchronized void update(long bettorId, double score) {
+        Integer slot = slots.get(bettorId);
+        if (slot == null) {
+            slot = size;
+            if (size == heap.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+                position = Arrays.copyOf(position, capacity);
+                heap = Arrays.copyOf(heap, capacity);
+            }
+            slots.put(bettorId, slot);
+            ids[slot] = bettorId;
+            scores[slot] = score;
+            heap[size] = slot;
+            position[slot] = size;
+            size++;
+            siftUp(position[slot]);
+            return;
+        }
+        double previous = scores[slot];
+        scores[slot] = score;
+        if (score > previous) {
+            siftUp(position[slot]);
+        } else {
+            siftDown(position[slot]);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param bettorId the bettor's id
+     * @return the bettor's score, or NaN if the bettor is not on the board
+     */
+    public synchronized double getScore(long bettorId) {
+        Integer slot = slots.get(bettorId);
+        return slot == null ? Double.NaN : scores[slot];
+    }
+
+    /**
+     * Lists the best bettors, highest score first.
+     *
+     * @param k how many bettors to return at most
+     * @return the ids of the leading bettors
+     */
+    public synchronized long[] top(int k) {
+        int count = Math.min(k, size);
+        long[] leaders = new long[count];
+        if (count == 0) {
+            return leaders;
+        }
+        // The frontier is itself a max-heap of positions in the main heap. A position's
+        // children can only be taken after it, so it never holds more than k + 1 entries.
+        int[] frontier = new int[2 * count + 1];
+        int frontierSize = 0;
+        frontier[frontierSize++] = 0;
+        for (int taken = 0; taken < count; taken++) {
+            int best = frontier[0];
+            frontier[0] = frontier[--frontierSize];
+            frontierSiftDown(frontier, frontierSize, 0);
+            leaders[taken] = ids[heap[best]];
+            for (int child = 2 * best + 1; child <= 2 * best + 2 && child < size; child++) {
+                frontier[frontierSize] = child;
+                frontierSiftUp(frontier, frontierSize++);
+            }
+        }
+        return leaders;
+    }
+
+    private void siftUp(int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[heap[parent]] >= scores[slot]) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(slot, index);
+    }
+
+    private void siftDown(int index) {
+        int slot = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && scores[heap[child + 1]] > scores[heap[child]]) {
+                child++;
+            }
+            if (scores[heap[child]] <= scores[slot]) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(slot, index);
+    }
+
+    private void place(int slot, int index) {
+        heap[index] = slot;
+        position[slot] = index;
+    }
+
+    private double scoreAt(int heapIndex) {
+        return scores[heap[heapIndex]];
+    }
+
+    private void frontierSiftUp(int[] frontier, int index) {
+        int entry = frontier[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scoreAt(frontier[parent]) >= scoreAt(entry)) {
+                break;
+            }
+            frontier[index] = frontier[parent];
+            index = parent;
+        }
+        frontier[index] = entry;
+    }
+
+    private void frontierSiftDown(int[] frontier, int frontierSize, int index) {
+        int entry = frontier[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= frontierSize) {
+                break;
+            }
+            if (child + 1 < frontierSize && scoreAt(frontier[child + 1]) > scoreAt(frontier[child])) {
+                child++;
+            }
+            if (scoreAt(frontier[child]) <= scoreAt(entry)) {
+                break;
+            }
+            frontier[index] = frontier[child];
+            index = child;
+        }
+        frontier[index] = entry;
+    }
+
+    /**
+     * Fills a board with random scores, then times updates and top-10 queries.
+     *
+     * Usage: java Leaderboard [bettors]
+     */
+    public static void main(String[] args) {
+        int bettors = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        SplittableRandom random = new SplittableRandom(42);
+        Leaderboard board = new Leaderboard();
+        for (int i = 0; i < bettors; i++) {
+            board.update(i, random.nextDouble(-10_000, 10_000));
+        }
+
+        int rounds = 1_000_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            board.update(random.nextInt(bettors), random.nextDouble(-10_000, 10_000));
+        }
+        double updateNanos = (System.nanoTime() - start) / (double) rounds;
+
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += board.top(10)[0];
+        }
+        double queryNanos = (System.nanoTime() - start) / (double) rounds;
+        System.out.printf("%d bettors: update %.0f ns, top 10 %.0f ns (%d)%n", bettors, updateNanos, queryNanos, checksum);
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Checks Leaderboard's top-k against sorting every score, through many random updates.
+ *
+ * Usage: java LeaderboardTestDriver
+ */
+public class LeaderboardTestDriver {
+    public static void main(String[] args) {
+        new LeaderboardTestDriver().runTests();
+    }
+
+    private void runTests() {
+        Leaderboard board = new Leaderboard();
+        validate(0, board.top(5).length);
+        validate(true, Double.isNaN(board.getScore(1)));
+
+        board.update(1, 10);
+        board.update(2, 30);
+        board.update(3, 20);
+        validate(3, board.size());
+        validate("[2, 3, 1]", Arrays.toString(board.top(10)));
+        validate("[2]", Arrays.toString(board.top(1)));
+        validate(0, board.top(0).length);
+
+        // A falling score moves down, a rising one up, and neither adds an entry.
+        board.update(2, 5);
+        validate("[3, 1, 2]", Arrays.toString(board.top(3)));
+        board.update(1, 25);
+        validate("[1, 3, 2]", Arrays.toString(board.top(3)));
+        validate(3, board.size());
+        validate(25.0, board.getScore(1));
+
+        // Through many random updates the top k always matches a full sort of the scores. Scores
+        // repeat, so the order is compared by score rather than by id.
+        SplittableRandom random = new SplittableRandom(15);
+        board = new Leaderboard();
+        Map<Long, Double> scores = new HashMap<>();
+        for (int round = 0; round < 20_000; round++) {
+            long bettor = random.nextInt(500);
+            double score = random.nextInt(-200, 200);
+            board.update(bettor, score);
+            scores.put(bettor, score);
+            if (round % 97 == 0) {
+                int k = 1 + random.nextInt(40);
+                double[] expected = scores.values().stream()
+                        .sorted((a, b) -> Double.compare(b, a))
+                        .limit(k)
+                        .mapToDouble(Double::doubleValue)
+                        .toArray();
+                long[] leaders = board.top(k);
+                validate(expected.length, leaders.length);
+                for (int i = 0; i < leaders.length; i++) {
+                    validate(expected[i], scores.get(leaders[i]));
+                    validate(scores.get(leaders[i]), board.getScore(leaders[i]));
+                }
+                validate(scores.size(), board.size());
+            }
+        }
+
+        System.out.println("Success!");
+    }
+
+    private <T> void validate(T expected, T actual) {
+        if (!expected.equals(actual))
+            throw new AssertionError("Expected: " + expected + ", but got: " + actual);
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class OddsEngine {
+    private static final int SIMULATIONS_PER_LEAF = 16_384;
+    private static final int DEADLINE_CHECK_INTERVAL = 1_024;
+    private static final double MAX_PAYOUT_MULTIPLIER = 1 / (0.01);
+    /** The normal quantile for a two-sided 95% confidence interval. */
+    static final double Z_95 = 1.959963984540054;
+
+    private final long maxSimulations;
+    private final long latencyBudgetMillis;
+    private final ForkJoinPool pool;
+
+    public OddsEngine(long maxSimulations, long latencyBudgetMillis) {
+        this(maxSimulations, latencyBudgetMillis, ForkJoinPool.commonPool());
+    }
+
+    public OddsEngine(long maxSimulations, long latencyBudgetMillis, ForkJoinPool pool) {
+        if (maxSimulations <= 0 || latencyBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Simulation count and latency budget must be positive");
+        }
+        this.maxSimulations = maxSimulations;
+        this.latencyBudgetMillis = latencyBudgetMillis;
+        this.pool = pool;
+    }
+
+    /**
+     * Prices the current field by simulating the race many times across the fork/join pool.
+     * Simulation stops early when the latency budget runs out, so the quotes may be based on
+     * fewer than the configured number of races.
+     *
+     * @param field               the equines in lane order
+     * @param competitionDistance the length of the race track
+     * @return one quote per equine, in the same order as the field
+     */
+    public OddsQuote[] price(List<Equine> field, int competitionDistance) {
+        return price(field, competitionDistance, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Prices the field with every simulated race drawn from streams split off the given seed.
+     * Each fork/join task gets its own stream, so workers never contend on a shared generator.
+     */
+    public OddsQuote[] price(List<Equine> field, int competitionDistance, long seed) {
+        int size = field.size();
+        long deadline = System.nanoTime() + latencyBudgetMillis * 1_000_000L;
+        long[] wins = pool.invoke(new SimulationTask(field, competitionDistance, maxSimulations, deadline,
+                new SplittableRandom(seed)));
+
+        long simulations = wins[size];
+        OddsQuote[] quotes = new OddsQuote[size];
+        for (int i = 0; i < size; i++) {
+            double probability = simulations == 0 ? 0 : (double) wins[i] / simulations;
+            quotes[i] = new OddsQuote(probability, simulations);
+        }
+        return quotes;
+    }
+
+    /**
+     * Prices the field and stores each payout multiplier on its equine, so that wagers placed
+     * afterwards capture the simulated odds instead of the historical guess. An equine that won
+     * every simulated race is quoted 0, not left to the historical guess.
+     */
+    public void quoteField(List<Equine> field, int competitionDistance) {
+        OddsQuote[] quotes = price(field, competitionDistance);
+        for (int i = 0; i < quotes.length; i++) {
+            field.get(i).setQuotedOdds(quotes[i].getPayoutMultiplier());
+        }
+    }
+
+    private static class SimulationTask extends RecursiveTask<long[]> {
+        private final List<Equine> field;
+        private final int competitionDistance;
+        private final long simulations;
+        private final long deadline;
+        private final SplittableRandom random;
+
+        SimulationTask(List<Equine> field, int competitionDistance, long simulations, long deadline,
+                       SplittableRandom random) {
+            this.field = field;
+            this.competitionDistance = competitionDistance;
+            this.simulations = simulations;
+            this.deadline = deadline;
+            this.random = random;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (simulations > SIMULATIONS_PER_LEAF) {
+                long half = simulations / 2;
+                SimulationTask left = new SimulationTask(field, competitionDistance, half, deadline, random.split());
+                SimulationTask right = new SimulationTask(field, competitionDistance, simulations - half, deadline, random);
+                left.fork();
+                long[] counts = right.compute();
+                long[] other = left.join();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += other[i];
+                }
+                return counts;
+            }
+
+            CompetitionField competition = new CompetitionField(field, competitionDistance);
+            long[] counts = new long[competition.size() + 1];
+            long done = 0;
+            while (done < simulations) {
+                if (done % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    break;
+                }
+                competition.reset();
+                int winner = competition.run(random);
+                if (winner >= 0) {
+                    counts[winner]++;
+                }
+                done++;
+            }
+            counts[competition.size()] = done;
+            return counts;
+        }
+    }
+
+    /**
+     * The simulated chance of an equine winning, how sure the simulation is of it, and the
+     * payout it justifies.
+     */
+    public static class OddsQuote {
+        private final double probability;
+        private final long simulations;
+        private final double confidenceHalfWidth;
+
+        /**
+         * A quote from independent races, with the usual binomial 95% confidence interval.
+         */
+        public OddsQuote(double probability, long simulations) {
+            this(probability, simulations, simulations > 0
+                    ? Z_95 * Math.sqrt(probability * (1 - probability) / simulations)
+                    : Double.POSITIVE_INFINITY);
+        }
+
+        public OddsQuote(double probability, long simulations, double confidenceHalfWidth) {
+            this.probability = probability;
+            this.simulations = simulations;
+            this.confidenceHalfWidth = confidenceHalfWidth;
+        }
+
+        public double getProbability() {
+            return probability;
+        }
+
+        public long getSimulations() {
+            return simulations;
+        }
+
+        /**
+         * @return half the width of the 95% confidence interval around the probability
+         */
+        public double getConfidenceHalfWidth() {
+            return confidenceHalfWidth;
+        }
+
+        /**
+         * @return the fair decimal odds, 1 / probability
+         */
+        public double getFairOdds() {
+            return probability > 0 ? 1 / probability : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Winnings per unit staked on top of the returned stake, capped like the historical
+         * estimate. NaN when no race was simulated, which leaves the equine unquoted.
+         */
+        public double getPayoutMultiplier() {
+            if (simulations == 0) {
+                return Double.NaN;
+            }
+            return Math.min(getFairOdds() - 1, MAX_PAYOUT_MULTIPLIER);
+        }
+    }
+}
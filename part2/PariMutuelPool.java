@@ -0,0 +1,182 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pari-mutuel betting pool for one race. Every wager on an equine goes into that equine's
+ * pool. After the race, the takeout is removed from the total and the rest is shared among
+ * the wagers on the winner in proportion to their stakes.
+ *
+ * Stakes are counted in cents in a LongAdder per lane. Wagers can be placed from many threads
+ * at once, and concurrent placements update separate cells instead of fighting over one
+ * counter. Working out the dividend then only reads one sum per lane.
+ */
+public class PariMutuelPool {
+    private final List<Equine> field;
+    private final Map<Integer, Integer> lanesById = new HashMap<>();
+    private final double takeoutRate;
+    private final BigDecimal keptShare;
+    private final LongAdder[] poolCents;
+    private final LongAdder[] tickets;
+    private volatile boolean closed;
+
+    /**
+     * @param field       the equines in lane order
+     * @param takeoutRate the share of the total pool kept by the house, from 0 to 1
+     */
+    public PariMutuelPool(List<Equine> field, double takeoutRate) {
+        if (takeoutRate < 0 || takeoutRate >= 1) {
+            throw new IllegalArgumentException("Takeout rate must be at least 0 and below 1");
+        }
+        this.field = List.copyOf(field);
+        this.takeoutRate = takeoutRate;
+        this.keptShare = BigDecimal.ONE.subtract(BigDecimal.valueOf(takeoutRate));
+        this.poolCents = new LongAdder[field.size()];
+        this.tickets = new LongAdder[field.size()];
+        for (int lane = 0; lane < field.size(); lane++) {
+            lanesById.put(field.get(lane).getId(), lane);
+            poolCents[lane] = new LongAdder();
+            tickets[lane] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds a stake to an equine's pool. Safe to call from any thread while betting is open.
+     *
+     * @param equine the equine backed
+     * @param amount the stake
+     * @return false if betting has closed or the equine is not in this race
+     */
+    public boolean placeWager(Equine equine, double amount) {
+        Integer lane = lanesById.get(equine.getId());
+        return lane != null && placeWager(lane, amount);
+    }
+
+    /**
+     * Adds a stake to the pool of the equine in the given lane.
+     *
+     * @see #placeWager(Equine, double)
+     */
+    public boolean placeWager(int lane, double amount) {
+        if (closed) {
+            return false;
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Wager amount should be a positive number");
+        }
+        poolCents[lane].add(Math.round(amount * 100));
+        tickets[lane].increment();
+        return true;
+    }
+
+    /**
+     * Stops taking wagers. Wagers whose placeWager call has already returned true stay in the
+     * pool.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public double getTakeoutRate() {
+        return takeoutRate;
+    }
+
+    public double getPoolTotal() {
+        long cents = 0;
+        for (LongAdder pool : poolCents) {
+            cents += pool.sum();
+        }
+        return cents / 100.0;
+    }
+
+    public double getPool(int lane) {
+        return poolCents[lane].sum() / 100.0;
+    }
+
+    public long getTickets(int lane) {
+        return tickets[lane].sum();
+    }
+
+    /**
+     * Works out the amount returned per unit staked on a lane if it wins, stake included, from
+     * the pools as they stand. Dividends are rounded down to the cent, in decimal arithmetic: a
+     * floating-point quotient such as 4.5999... would otherwise lose a cent it is owed.
+     *
+     * @param lane the lane of the equine
+     * @return the dividend, or 0 if nothing has been staked on the lane
+     */
+    public double getDividend(int lane) {
+        return dividend(lane).doubleValue();
+    }
+
+    private BigDecimal dividend(int lane) {
+        long laneCents = poolCents[lane].sum();
+        if (laneCents == 0) {
+            return BigDecimal.ZERO;
+        }
+        long totalCents = 0;
+        for (LongAdder pool : poolCents) {
+            totalCents += pool.sum();
+        }
+        return BigDecimal.valueOf(totalCents).multiply(keptShare)
+                .divide(BigDecimal.valueOf(laneCents), 2, RoundingMode.FLOOR);
+    }
+
+    /**
+     * Sets the quoted odds of every equine in the field to its current pari-mutuel winnings
+     * per unit staked, so wagers placed now record an estimate of their final payout. A lane
+     * nobody has backed yet, or whose dividend would not beat the stake, is quoted 0.
+     */
+    public void quoteField() {
+        for (int lane = 0; lane < field.size(); lane++) {
+            double dividend = getDividend(lane);
+            field.get(lane).setQuotedOdds(Math.max(dividend - 1, 0));
+        }
+    }
+
+    /**
+     * Works out the winnings per unit staked on the winner, stake excluded.
+     *
+     * @param winner the winning equine
+     * @return the winnings per unit, or 0 if no one backed the winner
+     */
+    public double getWinningsPerUnit(Equine winner) {
+        Integer lane = lanesById.get(winner.getId());
+        if (lane == null) {
+            return 0;
+        }
+        return dividend(lane).subtract(BigDecimal.ONE).max(BigDecimal.ZERO).doubleValue();
+    }
+
+    /**
+     * Closes the pool and settles each bettor's open wagers on the race at the winner's dividend. Must only
+     * be called once every placeWager call has returned.
+     *
+     * @param bettors the bettors to pay out
+     * @param raceId  the race the pool was on
+     * @param winner  the winning equine, or null if every equine stumbled and every stake is
+     *                handed back
+     * @return the winnings paid per unit staked on the winner, 0 when the stakes were handed back
+     */
+    public double settle(List<Equestrian> bettors, long raceId, Equine winner) {
+        close();
+        if (winner == null) {
+            for (Equestrian bettor : bettors) {
+                bettor.refundWagers(raceId);
+            }
+            return 0;
+        }
+        double winningsPerUnit = getWinningsPerUnit(winner);
+        for (Equestrian bettor : bettors) {
+            bettor.settleWager(raceId, winner, winningsPerUnit);
+        }
+        return winningsPerUnit;
+    }
+}
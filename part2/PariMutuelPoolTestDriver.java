@@ -0,0 +1,108 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Checks how PariMutuelPool counts stakes and rounds dividends.
+ *
+ * Usage: java PariMutuelPoolTestDriver
+ */
+public class PariMutuelPoolTestDriver {
+    public static void main(String[] args) {
+        new PariMutuelPoolTestDriver().runTests();
+    }
+
+    private void runTests() {
+        List<Equine> field = new ArrayList<>();
+        for (int lane = 0; lane < 3; lane++) {
+            field.add(new Equine("Equine " + lane, Equine.Species.ARABIAN, Color.GRAY, 0.5, new HashSet<>(), "🐎"));
+        }
+
+        // Stakes are kept in cents, so many small stakes add up exactly.
+        PariMutuelPool pool = new PariMutuelPool(field, 0.15);
+        for (int i = 0; i < 10; i++) {
+            validate(true, pool.placeWager(0, 0.10));
+        }
+        validate(1.0, pool.getPool(0));
+        validate(10L, pool.getTickets(0));
+
+        // Dividends are rounded down to the cent.
+        pool = new PariMutuelPool(field, 0.15);
+        pool.placeWager(field.get(0), 30);
+        pool.placeWager(field.get(1), 70);
+        validate(100.0, pool.getPoolTotal());
+        validate(2.83, pool.getDividend(0));
+        validate(1.21, pool.getDividend(1));
+        validate(0.0, pool.getDividend(2));
+        validate(0.0, pool.getWinningsPerUnit(field.get(2)));
+
+        // Quoting prices every lane, and a lane nobody has backed is quoted at no winnings
+        // rather than falling back to the win history.
+        validate(100.0, field.get(2).getWinningProbability());
+        pool.quoteField();
+        validate(0.0, field.get(2).getWinningProbability());
+        validate(true, Math.abs(1.83 - field.get(0).getWinningProbability()) < 1e-9);
+
+        // A dividend that is a whole number of cents is paid in full: 0.23 / 0.05 is 4.60, even
+        // though the same division in doubles comes out just below it.
+        pool = new PariMutuelPool(field, 0);
+        pool.placeWager(0, 0.05);
+        pool.placeWager(1, 0.18);
+        validate(4.6, pool.getDividend(0));
+        validate(3.6, pool.getWinningsPerUnit(field.get(0)));
+
+        // Rounding never pays out more than the pool after takeout, and keeps back less than a
+        // cent per unit staked on the winner.
+        SplittableRandom random = new SplittableRandom(12);
+        for (int round = 0; round < 10_000; round++) {
+            double takeout = random.nextInt(30) / 100.0;
+            pool = new PariMutuelPool(field, takeout);
+            for (int wager = 0; wager < 1 + random.nextInt(20); wager++) {
+                pool.placeWager(random.nextInt(3), 0.01 * (1 + random.nextInt(5_000)));
+            }
+            double net = pool.getPoolTotal() * (1 - takeout);
+            for (int lane = 0; lane < 3; lane++) {
+                double staked = pool.getPool(lane);
+                if (staked > 0) {
+                    double paid = pool.getDividend(lane) * staked;
+                    validate(true, paid <= net + 1e-9);
+                    validate(true, paid > net - 0.01 * staked - 1e-9);
+                }
+            }
+        }
+
+        // Settling pays the winner's backers their stake back plus the winnings per unit.
+        pool = new PariMutuelPool(field, 0.15);
+        Equestrian winnerBacker = new Equestrian(100);
+        Equestrian loserBacker = new Equestrian(100);
+        winnerBacker.placeWager(1, field.get(0), 30);
+        pool.placeWager(field.get(0), 30);
+        loserBacker.placeWager(1, field.get(1), 70);
+        pool.placeWager(field.get(1), 70);
+        validate(1.83, pool.settle(List.of(winnerBacker, loserBacker), 1, field.get(0)));
+        validate(true, Math.abs(154.9 - winnerBacker.getBalance()) < 1e-9);
+        validate(30.0, loserBacker.getBalance());
+
+        // Once closed, the pool takes no more wagers.
+        validate(true, pool.isClosed());
+        validate(false, pool.placeWager(0, 5));
+        validate(30.0, pool.getPool(0));
+
+        // When every equine stumbles nobody can collect the pool, so every stake is handed back.
+        pool = new PariMutuelPool(field, 0.15);
+        Equestrian backer = new Equestrian(100);
+        backer.placeWager(2, field.get(0), 40);
+        pool.placeWager(field.get(0), 40);
+        validate(0.0, pool.settle(List.of(backer), 2, null));
+        validate(100.0, backer.getBalance());
+
+        System.out.println("Success!");
+    }
+
+    private <T> void validate(T expected, T actual) {
+        if (!expected.equals(actual))
+            throw new AssertionError("Expected: " + expected + ", but got: " + actual);
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Runs a batch of competitions from the command line with RaceEngine, without opening a window,
+ * and writes the results to standard output or a file.
+ *
+ * The field is read from a file:
+ * <pre>
+ * # competition distance on the first line, then one equine per line:
+ * # name,species,base velocity[,gear separated by spaces]
+ * 500
+ * Shadowfax,ARABIAN,0.9,saddle bridle
+ * Brego,THOROUGHBRED,0.7
+ * </pre>
+ * and the bettors, if any, from a second one:
+ * <pre>
+ * # one bettor per line: starting balance,name of the equine backed,stake per competition
+ * 1000,Shadowfax,10
+ * 1000,Brego,25
+ * </pre>
+ * Every bettor places the same wager before each competition, at the odds AdaptiveOddsEngine
+ * quotes for the field before the batch starts. When the equine.ledger system property names a
+ * file, wagers are recorded there instead of being kept in memory.
+ *
+ * Usage: java -Djava.awt.headless=true RaceCli field.txt [bettors.txt|-] [races] [threads] [master seed] [output file|-]
+ */
+public class RaceCli {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java RaceCli <field file> [bettor file|-] [races] [threads] [master seed] [output file|-]");
+            return;
+        }
+        Path fieldFile = Paths.get(args[0]);
+        String bettorFile = args.length > 1 ? args[1] : "-";
+        int races = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long masterSeed = args.length > 4 ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+        String output = args.length > 5 ? args[5] : "-";
+
+        WagerLedger ledger = openWagerLedger();
+        try {
+            RaceEngine engine = RaceEngine.fromFile(fieldFile);
+            List<Equine> field = engine.getField();
+            List<RaceEngine.StandingWager> wagers = bettorFile.equals("-")
+                    ? new ArrayList<>()
+                    : readWagers(Paths.get(bettorFile), field, ledger);
+            if (!wagers.isEmpty()) {
+                new AdaptiveOddsEngine(0.0007, 2_000_000, 500).quoteField(field, engine.getCompetitionDistance());
+            }
+            RaceEngine.BatchResult result = engine.runBatch(races, threads, masterSeed, wagers);
+            if (ledger != null) {
+                ledger.force();
+            }
+
+            Writer writer = output.equals("-") ? new PrintWriter(System.out) : Files.newBufferedWriter(Paths.get(output));
+            try (PrintWriter out = new PrintWriter(writer)) {
+                print(out, engine, wagers, result, threads, masterSeed);
+            }
+        } finally {
+            if (ledger != null) {
+                ledger.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a bettor file: one "starting balance,equine name,stake" line per bettor. Blank lines
+     * and lines starting with '#' are ignored.
+     *
+     * @param field  the equines the bettors can back
+     * @param ledger where the bettors record their wagers, or null to keep them in memory. The
+     *               bettors' ids follow those already in it.
+     * @return each bettor's standing wager, in file order
+     */
+    public static List<RaceEngine.StandingWager> readWagers(Path bettorFile, List<Equine> field, WagerLedger ledger)
+            throws IOException {
+        List<RaceEngine.StandingWager> wagers = new ArrayList<>();
+        long firstId = ledger != null ? ledger.getMaxBettorId() + 1 : 1;
+        for (String line : Files.readAllLines(bettorFile)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected balance,equine,stake but got: " + line);
+            }
+            int lane = -1;
+            for (int i = 0; i < field.size() && lane < 0; i++) {
+                if (field.get(i).getEquineName().equals(parts[1].trim())) {
+                    lane = i;
+                }
+            }
+            if (lane < 0) {
+                throw new IllegalArgumentException("No equine called " + parts[1].trim() + " in the field: " + line);
+            }
+            Equestrian bettor = new Equestrian(firstId + wagers.size(), Double.parseDouble(parts[0].trim()), ledger);
+            wagers.add(new RaceEngine.StandingWager(bettor, lane, Double.parseDouble(parts[2].trim())));
+        }
+        return wagers;
+    }
+
+    /**
+     * Opens the wager ledger named by the equine.ledger system property, if it is set. Equines
+     * created from now on get ids above those the ledger already refers to.
+     *
+     * @return the ledger, or null if it is not set or cannot be opened, in which case wagers are only kept in memory
+     */
+    private static WagerLedger openWagerLedger() {
+        String path = System.getProperty("equine.ledger");
+        if (path == null) {
+            return null;
+        }
+        try {
+            WagerLedger ledger = WagerLedger.open(Paths.get(path));
+            Equine.reserveIds(ledger.getMaxEquineId());
+            return ledger;
+        } catch (IOException e) {
+            System.err.println("Could not open wager ledger " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void print(PrintWriter out, RaceEngine engine, List<RaceEngine.StandingWager> wagers,
+                              RaceEngine.BatchResult result, int threads, long masterSeed) {
+        List<Equine> field = engine.getField();
+        long races = result.getRaces();
+        out.printf("%-20s %10s %8s %10s %10s%n", "Equine", "Wins", "Win %", "Stumbles", "Stumble %");
+        for (int lane = 0; lane < field.size(); lane++) {
+            out.printf("%-20s %10d %7.2f%% %10d %9.2f%%%n", field.get(lane).getEquineName(),
+                    result.getWins(lane), percent(result.getWins(lane), races),
+                    result.getStumbles(lane), percent(result.getStumbles(lane), races));
+        }
+        out.printf("All stumbled: %d (%.2f%%)%n", result.getAllStumbled(), percent(result.getAllStumbled(), races));
+
+        if (!wagers.isEmpty()) {
+            out.println();
+            out.printf("%-8s %-20s %8s %12s %10s %12s %8s%n", "Bettor", "Backing", "Odds", "Balance", "Wins", "Net", "ROI");
+            for (RaceEngine.StandingWager wager : wagers) {
+                Equestrian bettor = wager.getBettor();
+                Equine equine = field.get(wager.getLane());
+                BettorStats stats = bettor.getStats();
+                out.printf("%-8d %-20s %8.2f %12.2f %10d %12.2f %7.2f%%%n", bettor.getId(), equine.getEquineName(),
+                        equine.getWinningProbability(), bettor.getBalance(), stats.getWins(),
+                        stats.getNetWinnings(), stats.getReturnOnInvestment() * 100);
+            }
+            out.printf("Settled %d wagers in %.1f ms, skipped %d the bettors could not afford%n",
+                    result.getSettledWagers(), result.getSettlementNanos() / 1e6, result.getSkippedWagers());
+        }
+
+        out.println();
+        out.printf("%d races, %d ticks on %d threads in %.1f ms (%.0f races/s)%n", races, result.getTicks(),
+                threads, result.getRaceNanos() / 1e6, result.getRacesPerSecond());
+        out.println("Master seed: " + masterSeed);
+    }
+
+    private static double percent(long count, long races) {
+        return races == 0 ? 0 : 100.0 * count / races;
+    }
+}
@@ -0,0 +1,532 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs competitions for a field without any user interface: moving, stumbling, finding the
+ * winner and settling the wagers. Nothing here needs a display, so it works the same with
+ * java.awt.headless=true.
+ *
+ * A competition can be stepped one tick at a time with start and advance. This moves the
+ * Equine objects themselves, so they can be drawn between ticks, and keeps their career
+ * records; EquineRacingSimulator drives its competitions this way from its scheduler. Wagers
+ * name the competition they are on by its race id, and settle only touches those.
+ *
+ * runBatch runs many competitions as fast as the CPU allows instead. Each worker races a
+ * CompetitionField of its own and never touches the Equine objects. Competition i draws from
+ * the seed RaceSeeds.raceSeed(masterSeed, i) and follows the same rules with the same draws
+ * as start and advance, so any competition in a batch can be replayed tick by tick. The
+ * standing wagers are then settled competition by competition, in order, on the calling thread.
+ */
+public class RaceEngine {
+    private static final AtomicLong nextRaceId = new AtomicLong(1);
+
+    private final long raceId;
+    private final List<Equine> field;
+    private final int competitionDistance;
+    private final SettlementEngine settlementEngine;
+    private final EventStream<CompetitionEvent> events;
+    private SplittableRandom random;
+    private long seed;
+    private long tick;
+    private Equine winner;
+    private int runners;
+    private boolean finished;
+    private boolean publishingEvents;
+
+    public RaceEngine(List<Equine> field, int competitionDistance) {
+        this(newRaceId(), field, competitionDistance, new SettlementEngine(), null);
+    }
+
+    /**
+     * @param raceId              the id wagers on this competition are placed under
+     * @param field               the equines in lane order
+     * @param competitionDistance the length of the race track
+     * @param settlementEngine    settles the wagers of a stepped competition once it has a winner
+     * @param events              where the moves of stepped competitions are published, may be null
+     */
+    public RaceEngine(long raceId, List<Equine> field, int competitionDistance, SettlementEngine settlementEngine,
+                      EventStream<CompetitionEvent> events) {
+        if (field.isEmpty() || competitionDistance <= 0) {
+            throw new IllegalArgumentException("A race needs at least one equine and a positive distance");
+        }
+        this.raceId = raceId;
+        this.field = new ArrayList<>(field);
+        this.competitionDistance = competitionDistance;
+        this.settlementEngine = settlementEngine;
+        this.events = events;
+    }
+
+    /**
+     * @return a race id no other race in this process has been given
+     */
+    public static long newRaceId() {
+        return nextRaceId.getAndIncrement();
+    }
+
+    /**
+     * Reads a field file: the competition distance, then one "name,species,base velocity[,gear]"
+     * line per equine, as described in RaceCli. Blank lines and lines starting with '#' are ignored.
+     */
+    public static RaceEngine fromFile(Path fieldFile) throws IOException {
+        List<Equine> field = new ArrayList<>();
+        int distance = 0;
+        for (String line : Files.readAllLines(fieldFile)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (distance == 0) {
+                distance = Integer.parseInt(line);
+                if (distance <= 0) {
+                    throw new IllegalArgumentException("Competition distance must be positive.");
+                }
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length < 3 || parts.length > 4 || parts[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Expected name,species,base velocity[,gear] but got: " + line);
+            }
+            double velocity = Double.parseDouble(parts[2].trim());
+            if (velocity < 0 || velocity > 1) {
+                throw new IllegalArgumentException("Velocity should be between 0 and 1 but got: " + line);
+            }
+            Set<String> gear = new HashSet<>();
+            if (parts.length == 4) {
+                for (String item : parts[3].trim().split("\\s+")) {
+                    if (!item.isEmpty() && Equine.Gear.parse(item) == null) {
+                        throw new IllegalArgumentException("Unknown gear " + item + " in: " + line);
+                    }
+                    gear.add(item);
+                }
+            }
+            field.add(new Equine(parts[0].trim(), Equine.Species.valueOf(parts[1].trim().toUpperCase()),
+                    Color.GRAY, velocity, gear, "🐎"));
+        }
+        if (field.isEmpty()) {
+            throw new IllegalArgumentException("Field file needs a competition distance and at least one equine.");
+        }
+        return new RaceEngine(field, distance);
+    }
+
+    /**
+     * Puts every equine back at the start, counts the competition in their records and starts
+     * a new competition drawing from the given seed.
+     */
+    public void start(long seed) {
+        for (Equine participant : field) {
+            participant.resetForNewCompetition();
+            participant.incrementCompetitions();
+        }
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+        tick = 0;
+        winner = null;
+        finished = false;
+        runners = 0;
+        for (Equine participant : field) {
+            if (participant.getBaseVelocity() > 0) {
+                runners++;
+            }
+        }
+        SimulatorMetrics.get().raceStarted();
+    }
+
+    /**
+     * Moves every participant once. The winner is credited with the victory as soon as it
+     * crosses the line.
+     *
+     * @return true once a participant has won or every participant has stumbled
+     */
+    public boolean advance() {
+        if (random == null) {
+            throw new IllegalStateException("The competition has not been started");
+        }
+        if (finished) {
+            return true;
+        }
+        SimulatorEvents.Tick event = new SimulatorEvents.Tick();
+        event.begin();
+        long start = System.nanoTime();
+        tick++;
+        publishingEvents = events != null && events.hasSubscribers();
+        finished = moveParticipants();
+        if (winner != null) {
+            winner.incrementVictories();
+        }
+        SimulatorMetrics.get().recordTick(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.lanes = field.size();
+            event.finished = finished;
+            event.commit();
+        }
+        return finished;
+    }
+
+    /**
+     * Runs the competition started last to the end without pausing.
+     *
+     * @return the winner, or null if every participant stumbled
+     */
+    public Equine runToFinish() {
+        while (!advance()) {
+            // Keep ticking until someone wins or everyone is down.
+        }
+        return winner;
+    }
+
+    /**
+     * The same rules as CompetitionField.tick, applied to the Equine objects: the first equine
+     * to reach the finish ends the competition straight away, so lanes after it are not moved.
+     */
+    private boolean moveParticipants() {
+        for (int lane = 0; lane < field.size(); lane++) {
+            Equine participant = field.get(lane);
+            if (!participant.hasStumbled() && participant.getDistanceTraveled() < competitionDistance) {
+                if (random.nextDouble() < participant.getBaseVelocity()) {
+                    participant.compete(competitionDistance);
+                    publishEvent(CompetitionEvent.Type.MOVED, lane, participant);
+                }
+                if (participant.getDistanceTraveled() >= competitionDistance && !participant.hasStumbled()) {
+                    winner = participant;
+                    publishEvent(CompetitionEvent.Type.FINISHED, lane, participant);
+                    return true;
+                }
+            }
+
+            if (random.nextDouble() < 0.1 * participant.getBaseVelocity() * participant.getBaseVelocity()) {
+                if (!participant.hasStumbled()) {
+                    SimulatorMetrics.get().recordStumbles(1);
+                    runners--;
+                    publishEvent(CompetitionEvent.Type.STUMBLED, lane, participant);
+                }
+                participant.stumble();
+            }
+        }
+
+        // Equines with no velocity never move and never stumble, so once every other
+        // equine is down nobody can finish.
+        return runners == 0;
+    }
+
+    private void publishEvent(CompetitionEvent.Type type, int lane, Equine participant) {
+        if (publishingEvents) {
+            events.publish(new CompetitionEvent(type, tick, lane, participant, participant.getDistanceTraveled()));
+        }
+    }
+
+    /**
+     * Settles the bettors' open wagers on the finished competition, at the pool's dividend when
+     * a pari-mutuel pool is given and at the quoted odds otherwise. The pool is closed first.
+     * When every participant stumbled, every fixed-odds wager is lost, as the odds price it,
+     * while a pool has nobody to pay out and hands every stake back.
+     *
+     * @param bettors the bettors to settle
+     * @param pool    the pari-mutuel pool of the competition, or null for fixed odds
+     * @return how long settlement took and how many bettors it covered
+     */
+    public SettlementEngine.Report settle(List<Equestrian> bettors, PariMutuelPool pool) {
+        if (!finished) {
+            throw new IllegalStateException("Only a finished competition can be settled");
+        }
+        if (pool != null) {
+            pool.close();
+            if (winner == null) {
+                return settlementEngine.refund(bettors, raceId);
+            }
+            return settlementEngine.settle(bettors, raceId, winner, pool.getWinningsPerUnit(winner));
+        }
+        return settlementEngine.settle(bettors, raceId, winner);
+    }
+
+    /**
+     * Settles each bettor's open wagers on a race in turn on the calling thread, at the odds
+     * they were placed at. This is the rule every settlement follows: a wager on the winner is won and any
+     * other is lost, so when every participant stumbled, every wager is lost, just as the odds
+     * price it. For a handful of bettors it is cheaper than a SettlementEngine run.
+     *
+     * @param bettors the bettors to settle
+     * @param raceId  the race that has finished
+     * @param winner  the winning equine, or null if every participant stumbled
+     * @return the number of wagers settled
+     */
+    public static long settleEach(List<Equestrian> bettors, long raceId, Equine winner) {
+        long settled = 0;
+        for (Equestrian bettor : bettors) {
+            settled += bettor.settleWager(raceId, winner);
+        }
+        return settled;
+    }
+
+    /**
+     * @return the id wagers on this competition are placed under
+     */
+    public long getRaceId() {
+        return raceId;
+    }
+
+    public List<Equine> getField() {
+        return field;
+    }
+
+    public int getCompetitionDistance() {
+        return competitionDistance;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the winner, or null if the competition is not over or every participant stumbled
+     */
+    public Equine getWinner() {
+        return winner;
+    }
+
+    /**
+     * Runs the given number of competitions split evenly over a fixed pool of threads, then has
+     * every standing wager placed before each competition and settled after it, at the quoted
+     * odds, in competition order. A wager its bettor cannot afford is skipped for that
+     * competition, and every wager on a competition where all the equines stumbled is lost.
+     *
+     * The outcomes only depend on the master seed, not on the number of threads.
+     *
+     * @param wagers the wagers placed again before every competition, may be empty
+     */
+    public BatchResult runBatch(int races, int threads, long masterSeed, List<StandingWager> wagers)
+            throws InterruptedException {
+        if (races < 0 || threads <= 0) {
+            throw new IllegalArgumentException("Race count must not be negative and thread count must be positive");
+        }
+        long start = System.nanoTime();
+        BatchResult result = new BatchResult(field.size(), races);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BatchResult>> parts = new ArrayList<>();
+            int first = 0;
+            for (int t = 0; t < threads; t++) {
+                int from = first;
+                int to = from + races / threads + (t < races % threads ? 1 : 0);
+                parts.add(pool.submit(() -> runShare(from, to, masterSeed, result.winnerLanes)));
+                first = to;
+            }
+            for (Future<BatchResult> part : parts) {
+                result.add(part.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch race failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        result.raceNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        if (!wagers.isEmpty()) {
+            settleBatch(result.winnerLanes, wagers, result);
+        }
+        result.settlementNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Runs competitions from (inclusive) to to (exclusive) on a field of its own, writing each
+     * winning lane into the shared array; workers write disjoint ranges.
+     */
+    private BatchResult runShare(int from, int to, long masterSeed, int[] winnerLanes) {
+        BatchResult result = new BatchResult(field.size(), 0);
+        CompetitionField competition = new CompetitionField(field, competitionDistance);
+        for (int r = from; r < to; r++) {
+            competition.reset();
+            SplittableRandom random = new SplittableRandom(RaceSeeds.raceSeed(masterSeed, r));
+            int outcome;
+            do {
+                outcome = competition.tick(random);
+                result.ticks++;
+            } while (outcome == CompetitionField.RUNNING);
+            winnerLanes[r] = outcome;
+            result.record(competition, outcome);
+        }
+        return result;
+    }
+
+    /**
+     * Settles with settleEach, as RaceHost does: for a handful of bettors a SettlementEngine run
+     * costs more than the settling itself.
+     */
+    private void settleBatch(int[] winnerLanes, List<StandingWager> wagers, BatchResult result) {
+        List<Equestrian> bettors = new ArrayList<>();
+        for (StandingWager wager : wagers) {
+            if (!bettors.contains(wager.bettor)) {
+                bettors.add(wager.bettor);
+            }
+        }
+        Equine[] equines = field.toArray(new Equine[0]);
+        for (int winnerLane : winnerLanes) {
+            long batchRaceId = newRaceId();
+            for (StandingWager wager : wagers) {
+                if (!wager.bettor.placeWager(batchRaceId, equines[wager.lane], wager.amount)) {
+                    result.skippedWagers++;
+                }
+            }
+            result.settledWagers += settleEach(bettors, batchRaceId, winnerLane >= 0 ? equines[winnerLane] : null);
+        }
+    }
+
+    /**
+     * A wager a bettor places again before every competition of a batch.
+     */
+    public static class StandingWager {
+        private final Equestrian bettor;
+        private final int lane;
+        private final double amount;
+
+        /**
+         * @param bettor the bettor placing the wager
+         * @param lane   the lane of the equine backed
+         * @param amount the stake of every wager
+         */
+        public StandingWager(Equestrian bettor, int lane, double amount) {
+            if (amount <= 0) {
+                throw new IllegalArgumentException("Wager amount should be a positive number");
+            }
+            this.bettor = bettor;
+            this.lane = lane;
+            this.amount = amount;
+        }
+
+        public Equestrian getBettor() {
+            return bettor;
+        }
+
+        public int getLane() {
+            return lane;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+    }
+
+    /**
+     * Win and stumble counts for every lane across a batch of competitions.
+     */
+    public static class BatchResult {
+        private final long[] wins;
+        private final long[] stumbles;
+        final int[] winnerLanes;
+        private long races;
+        private long allStumbled;
+        private long ticks;
+        private long settledWagers;
+        private long skippedWagers;
+        private long raceNanos;
+        private long settlementNanos;
+
+        BatchResult(int fieldSize, int races) {
+            wins = new long[fieldSize];
+            stumbles = new long[fieldSize];
+            winnerLanes = new int[races];
+        }
+
+        void record(CompetitionField competition, int outcome) {
+            races++;
+            if (outcome >= 0) {
+                wins[outcome]++;
+            } else {
+                allStumbled++;
+            }
+            for (int lane = 0; lane < stumbles.length; lane++) {
+                if (competition.hasStumbled(lane)) {
+                    stumbles[lane]++;
+                }
+            }
+        }
+
+        void add(BatchResult other) {
+            for (int lane = 0; lane < wins.length; lane++) {
+                wins[lane] += other.wins[lane];
+                stumbles[lane] += other.stumbles[lane];
+            }
+            races += other.races;
+            allStumbled += other.allStumbled;
+            ticks += other.ticks;
+        }
+
+        public long getWins(int lane) {
+            return wins[lane];
+        }
+
+        public long getStumbles(int lane) {
+            return stumbles[lane];
+        }
+
+        /**
+         * @return the winning lane of the competition with the given index, or CompetitionField.ALL_STUMBLED
+         */
+        public int getWinnerLane(int race) {
+            return winnerLanes[race];
+        }
+
+        public long getRaces() {
+            return races;
+        }
+
+        public long getAllStumbled() {
+            return allStumbled;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public long getSettledWagers() {
+            return settledWagers;
+        }
+
+        /**
+         * @return the standing wagers not placed because their bettor could not afford them
+         */
+        public long getSkippedWagers() {
+            return skippedWagers;
+        }
+
+        /**
+         * @return how long running the competitions took, in nanoseconds
+         */
+        public long getRaceNanos() {
+            return raceNanos;
+        }
+
+        /**
+         * @return how long placing and settling the wagers took, in nanoseconds
+         */
+        public long getSettlementNanos() {
+            return settlementNanos;
+        }
+
+        public double getRacesPerSecond() {
+            return raceNanos == 0 ? 0 : races * 1e9 / raceNanos;
+        }
+    }
+}
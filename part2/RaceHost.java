@@ -0,0 +1,312 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hosts many independent competitions in one JVM.
+ *
+ * Every hosted race has its own field, bettors, track length and random stream. Races do not
+ * get a thread each: their ticks are scheduled at a fixed rate on one shared pool sized to the
+ * number of cores, so thousands of races only cost a small task per tick each. A race's ticks
+ * never overlap, but different races tick in parallel.
+ *
+ * Hosted races keep their state in a CompetitionField and never change the Equine objects they
+ * were created from, so the same equine may run in several races at once. Career records on
+ * Equine are left to the caller. A bettor may also bet in several races at once: wagers are
+ * placed under the id of the race they are on, a race settles only its own wagers when it
+ * finishes and refunds them when it is torn down first, and Equestrian is thread-safe, so races
+ * finishing together settle its wagers one after the other.
+ */
+public class RaceHost implements AutoCloseable {
+    public enum Status { RUNNING, FINISHED, CANCELLED }
+
+    /**
+     * Receives updates about a hosted race. Called on the host's tick threads, so
+     * implementations should return quickly.
+     */
+    public interface RaceListener {
+        default void onTick(HostedRace race) {
+        }
+
+        void onFinish(HostedRace race);
+    }
+
+    private final ScheduledExecutorService ticker;
+    private final long tickMillis;
+    private final ConcurrentHashMap<Long, HostedRace> races = new ConcurrentHashMap<>();
+    private final SplittableRandom seedSource = new SplittableRandom();
+
+    /**
+     * @param tickThreads the number of threads ticking races
+     * @param tickMillis  the time between two ticks of a race
+     */
+    public RaceHost(int tickThreads, long tickMillis) {
+        if (tickThreads <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("Thread count and tick interval must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.ticker = Executors.newScheduledThreadPool(tickThreads, runnable -> {
+            Thread thread = new Thread(runnable, "race-host");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public RaceHost() {
+        this(Runtime.getRuntime().availableProcessors(), 100);
+    }
+
+    /**
+     * Creates a race with a random seed and starts it.
+     *
+     * @see #createRace(long, List, List, int, long, RaceListener)
+     */
+    public HostedRace createRace(long raceId, List<Equine> field, List<Equestrian> bettors, int competitionDistance,
+                                 RaceListener listener) {
+        long seed;
+        synchronized (seedSource) {
+            seed = seedSource.nextLong();
+        }
+        return createRace(raceId, field, bettors, competitionDistance, seed, listener);
+    }
+
+    /**
+     * Creates a race and starts ticking it. Bettors place their wagers on it beforehand under
+     * an id from RaceEngine.newRaceId.
+     *
+     * @param raceId              the id of the race, which its wagers are placed under
+     * @param field               the equines in lane order
+     * @param bettors             the bettors whose open wagers on the race are settled when it ends
+     * @param competitionDistance the length of the race track
+     * @param seed                the seed of the race's random stream
+     * @param listener            told about every tick and the result, may be null
+     * @return the hosted race
+     */
+    public HostedRace createRace(long raceId, List<Equine> field, List<Equestrian> bettors, int competitionDistance,
+                                 long seed, RaceListener listener) {
+        if (field.isEmpty() || competitionDistance <= 0) {
+            throw new IllegalArgumentException("A race needs at least one equine and a positive distance");
+        }
+        HostedRace race = new HostedRace(raceId, new CompetitionField(field, competitionDistance),
+                new ArrayList<>(bettors), seed, listener);
+        if (races.putIfAbsent(raceId, race) != null) {
+            throw new IllegalArgumentException("A race with id " + raceId + " is already hosted");
+        }
+        SimulatorMetrics.get().raceStarted();
+        race.task = ticker.scheduleAtFixedRate(race::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        return race;
+    }
+
+    /**
+     * @param id the id of a race
+     * @return the race, or null if there is no race with that id
+     */
+    public HostedRace getRace(long id) {
+        return races.get(id);
+    }
+
+    public Collection<HostedRace> getRaces() {
+        return races.values();
+    }
+
+    /**
+     * Stops a race if it is still running, refunding its wagers, and forgets it.
+     *
+     * @param id the id of the race
+     */
+    public void tearDown(long id) {
+        HostedRace race = races.remove(id);
+        if (race != null) {
+            race.cancel();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Long id : races.keySet()) {
+            tearDown(id);
+        }
+        ticker.shutdownNow();
+    }
+
+    /**
+     * One race running on the host.
+     */
+    public static class HostedRace {
+        private final long id;
+        private final CompetitionField field;
+        private final List<Equestrian> bettors;
+        private final long seed;
+        private final SplittableRandom random;
+        private final RaceListener listener;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicReference<Status> status = new AtomicReference<>(Status.RUNNING);
+        private volatile long ticks;
+        private volatile int winnerLane = CompetitionField.RUNNING;
+        private volatile ScheduledFuture<?> task;
+
+        HostedRace(long id, CompetitionField field, List<Equestrian> bettors, long seed, RaceListener listener) {
+            this.id = id;
+            this.field = field;
+            this.bettors = bettors;
+            this.seed = seed;
+            this.random = new SplittableRandom(seed);
+            this.listener = listener;
+        }
+
+        private void tick() {
+            if (status.get() != Status.RUNNING) {
+                return;
+            }
+            SimulatorEvents.Tick event = new SimulatorEvents.Tick();
+            event.begin();
+            long start = System.nanoTime();
+            int result = field.tick(random);
+            ticks++;
+            SimulatorMetrics.get().recordTick(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.tick = ticks;
+                event.lanes = field.size();
+                event.finished = result != CompetitionField.RUNNING;
+                event.commit();
+            }
+            if (listener != null) {
+                listener.onTick(this);
+            }
+            if (result != CompetitionField.RUNNING) {
+                finish(result);
+            }
+        }
+
+        /**
+         * Ends the race unless it has been torn down meanwhile, and settles the bettors' open
+         * wagers on it by the same rule as RaceEngine.
+         */
+        private void finish(int result) {
+            if (!status.compareAndSet(Status.RUNNING, Status.FINISHED)) {
+                return;
+            }
+            winnerLane = result;
+            int stumbles = 0;
+            for (int lane = 0; lane < field.size(); lane++) {
+                if (field.hasStumbled(lane)) {
+                    stumbles++;
+                }
+            }
+            SimulatorMetrics.get().recordStumbles(stumbles);
+            RaceEngine.settleEach(bettors, id, result >= 0 ? field.getEquine(result) : null);
+            cancelTask();
+            finished.countDown();
+            if (listener != null) {
+                listener.onFinish(this);
+            }
+        }
+
+        /**
+         * Stops the race unless it has finished meanwhile, and hands back the stakes of its
+         * open wagers.
+         */
+        private void cancel() {
+            if (status.compareAndSet(Status.RUNNING, Status.CANCELLED)) {
+                cancelTask();
+                for (Equestrian bettor : bettors) {
+                    bettor.refundWagers(id);
+                }
+                finished.countDown();
+            }
+        }
+
+        private void cancelTask() {
+            ScheduledFuture<?> scheduled = task;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+
+        /**
+         * Blocks until the race has finished or been torn down.
+         */
+        public void awaitFinish() throws InterruptedException {
+            finished.await();
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * @return the race's status. A race becomes FINISHED just before its wagers are settled;
+         *         awaitFinish returns once they have been.
+         */
+        public Status getStatus() {
+            return status.get();
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        /**
+         * Gives access to the race's lanes. Only read it from a RaceListener callback or after
+         * the race has finished; at other times it may be halfway through a tick.
+         *
+         * @return the state of the race
+         */
+        public CompetitionField getField() {
+            return field;
+        }
+
+        /**
+         * @return the winner, or null if the race is not over or every equine stumbled
+         */
+        public Equine getWinner() {
+            int lane = winnerLane;
+            return lane >= 0 ? field.getEquine(lane) : null;
+        }
+    }
+
+    /**
+     * Starts many races with a small generated field each and reports how long they took.
+     *
+     * Usage: java RaceHost [races] [tick millis]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int raceCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long tickMillis = args.length > 1 ? Long.parseLong(args[1]) : 100;
+
+        SplittableRandom random = new SplittableRandom();
+        try (RaceHost host = new RaceHost(Runtime.getRuntime().availableProcessors(), tickMillis)) {
+            long start = System.nanoTime();
+            List<HostedRace> started = new ArrayList<>();
+            for (int r = 0; r < raceCount; r++) {
+                List<Equine> field = new ArrayList<>();
+                for (int lane = 0; lane < 4; lane++) {
+                    field.add(new Equine("Equine " + lane, Equine.Species.ARABIAN, Color.GRAY,
+                            0.2 + random.nextDouble() * 0.8, new HashSet<>(), "🐎"));
+                }
+                started.add(host.createRace(RaceEngine.newRaceId(), field, new ArrayList<>(), 500, null));
+            }
+            long ticks = 0;
+            for (HostedRace race : started) {
+                race.awaitFinish();
+                ticks += race.getTicks();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d races, %d ticks in %.2f s (%.0f ticks/s)%n", raceCount, ticks, seconds, ticks / seconds);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws the race track and the equines running on it.
+ *
+ * The lanes never change during a race, so they are drawn once into an image that is only
+ * rebuilt when the panel is resized or the field changes. Each tick then repaints just the
+ * rectangles an equine left and moved into, instead of the whole panel.
+ *
+ * Positions are never read from the Equine objects, which the competition thread is changing.
+ * The panel draws the latest CompetitionFrame taken from a FrameExchanger on the event thread.
+ */
+public class RaceTrackPanel extends JPanel {
+    private static final int TRACK_HEIGHT = 50;
+    private static final int SPACE_BETWEEN_TRACKS = 10;
+    private static final int PADDING = 20;
+    private static final int SIDE_MARGIN = 50;
+    private static final Font RUNNER_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final Stroke DOTTED = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 0, new float[]{9}, 0);
+
+    private final List<Equine> participants;
+    private final int competitionDistance;
+    private final FrameExchanger frames;
+    private final Rectangle[] shownBounds;
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    private CompetitionFrame displayedFrame;
+    private BufferedImage trackLayer;
+
+    /**
+     * @param participants        the equines in lane order
+     * @param competitionDistance the length of the race track
+     * @param frames              where the competition thread publishes its frames
+     */
+    public RaceTrackPanel(List<Equine> participants, int competitionDistance, FrameExchanger frames) {
+        super(new BorderLayout());
+        this.participants = participants;
+        this.competitionDistance = competitionDistance;
+        this.frames = frames;
+        this.displayedFrame = frames.getLatestFrame();
+        this.shownBounds = new Rectangle[participants.size()];
+        setOpaque(false);
+        setPreferredSize(new Dimension(0, calculatePanelHeight()));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        drawRaceTrack(g);
+    }
+
+    /**
+     * Draws the cached lanes and every equine whose text overlaps the area being painted.
+     *
+     * @param g the Graphics object to draw on
+     */
+    public void drawRaceTrack(Graphics g) {
+        SimulatorEvents.Frame event = new SimulatorEvents.Frame();
+        event.begin();
+        long start = System.nanoTime();
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.drawImage(getTrackLayer(), 0, 0, null);
+
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(Color.BLACK);
+        g2d.setFont(RUNNER_FONT);
+        Rectangle clip = g2d.getClipBounds();
+        for (int i = 0; i < participants.size(); i++) {
+            Rectangle bounds = calculateRunnerBounds(i);
+            shownBounds[i] = bounds;
+            if (clip == null || clip.intersects(bounds)) {
+                FontMetrics metrics = g2d.getFontMetrics();
+                g2d.drawString(getRunnerText(i), bounds.x + 2, bounds.y + 2 + metrics.getAscent());
+            }
+        }
+        g2d.dispose();
+        SimulatorMetrics.get().recordFrame(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.lanes = participants.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Tells the panel that a newer frame has been published. Safe to call from any thread;
+     * calls made while an update is already queued on the event thread are merged into it.
+     */
+    public void frameReady() {
+        if (updatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::showLatestFrame);
+        }
+    }
+
+    /**
+     * Takes the latest frame and repaints the old and new position of every equine that moved
+     * or stumbled since it was last painted.
+     */
+    private void showLatestFrame() {
+        updatePending.set(false);
+        displayedFrame = frames.getLatestFrame();
+        for (int i = 0; i < participants.size(); i++) {
+            Rectangle bounds = calculateRunnerBounds(i);
+            Rectangle shown = shownBounds[i];
+            if (shown == null) {
+                repaint(bounds);
+            } else if (!shown.equals(bounds)) {
+                repaint(shown.union(bounds));
+            }
+        }
+    }
+
+    /**
+     * Returns the lanes drawn for the current panel size, drawing them first if the size changed.
+     *
+     * @return the cached image of the empty track
+     */
+    private BufferedImage getTrackLayer() {
+        int width = Math.max(getWidth(), 1);
+        int height = Math.max(getHeight(), 1);
+        if (trackLayer == null || trackLayer.getWidth() != width || trackLayer.getHeight() != height) {
+            trackLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = trackLayer.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setStroke(DOTTED);
+            g2d.setColor(Color.BLACK);
+            int trackWidth = width - 2 * SIDE_MARGIN;
+            int startY = getStartY();
+            for (int i = 0; i < participants.size(); i++) {
+                g2d.drawRect(SIDE_MARGIN, getLaneY(i), trackWidth, TRACK_HEIGHT);
+            }
+            if (participants.size() > 0) {
+                g2d.drawRect(SIDE_MARGIN, startY, trackWidth,
+                        participants.size() * (TRACK_HEIGHT + SPACE_BETWEEN_TRACKS) - SPACE_BETWEEN_TRACKS);
+            }
+            g2d.dispose();
+        }
+        return trackLayer;
+    }
+
+    /**
+     * Works out where the text for an equine is drawn, padded slightly for anti-aliasing.
+     *
+     * @param lane the lane of the equine
+     * @return the area covered by the equine's text
+     */
+    private Rectangle calculateRunnerBounds(int lane) {
+        FontMetrics metrics = getFontMetrics(RUNNER_FONT);
+        int participantX = (int) ((getWidth() - 2 * SIDE_MARGIN) * (displayedFrame.getDistanceTraveled(lane) / (double) competitionDistance)) + SIDE_MARGIN;
+        int baseline = getLaneY(lane) + TRACK_HEIGHT / 2;
+        int textWidth = metrics.stringWidth(getRunnerText(lane));
+        return new Rectangle(participantX - 2, baseline - metrics.getAscent() - 2,
+                textWidth + 4, metrics.getAscent() + metrics.getDescent() + 4);
+    }
+
+    private String getRunnerText(int lane) {
+        if (displayedFrame.hasStumbled(lane)) {
+            return "❌";
+        }
+        Equine participant = participants.get(lane);
+        return participant.getIcon() + " - " + participant.getEquineName();
+    }
+
+    private int getStartY() {
+        return (getHeight() - (TRACK_HEIGHT * participants.size())) / 2;
+    }
+
+    private int getLaneY(int lane) {
+        return getStartY() + lane * (TRACK_HEIGHT + SPACE_BETWEEN_TRACKS);
+    }
+
+    /**
+     * Calculates the preferred height of the panel based on the number of participants.
+     *
+     * @return the calculated preferred height
+     */
+    private int calculatePanelHeight() {
+        return (TRACK_HEIGHT + SPACE_BETWEEN_TRACKS) * participants.size() + PADDING;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Moves the lanes of a CompetitionField one at a time. Used when the vector kernel is not
+ * available, and for the lanes left over after the vector kernel's last full batch.
+ */
+class ScalarCompetitionFieldKernel implements CompetitionFieldKernel {
+    @Override
+    public int tick(CompetitionField field, int seed) {
+        return tickLanes(field, seed, 0, field.size());
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    /**
+     * Moves lanes from (inclusive) to to (exclusive).
+     *
+     * @return the winning lane, or CompetitionField.RUNNING if nobody finished
+     */
+    static int tickLanes(CompetitionField field, int seed, int from, int to) {
+        int size = field.size();
+        double competitionDistance = field.getCompetitionDistance();
+        int[] moveThreshold = field.moveThreshold;
+        int[] stumbleThreshold = field.stumbleThreshold;
+        double[] stride = field.stride;
+        double[] distanceTraveled = field.distanceTraveled;
+        boolean[] stumbled = field.stumbled;
+        for (int lane = from; lane < to; lane++) {
+            if (stumbled[lane]) {
+                continue;
+            }
+            if (CompetitionFieldKernel.draw(seed, lane) <= moveThreshold[lane]) {
+                distanceTraveled[lane] = Math.min(distanceTraveled[lane] + stride[lane], competitionDistance);
+                if (distanceTraveled[lane] >= competitionDistance) {
+                    return lane;
+                }
+            }
+            if (CompetitionFieldKernel.draw(seed, size + lane) <= stumbleThreshold[lane]) {
+                stumbled[lane] = true;
+                field.runners--;
+            }
+        }
+        return CompetitionField.RUNNING;
+    }
+}
@@ -0,0 +1,288 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Settles every open wager at the end of a race, splitting the bettors across a fork/join pool.
+ *
+ * Each task owns a contiguous range of bettors, so balances are updated without locks. The
+ * engine remembers how long its recent settlements took and reports the 99th percentile next to
+ * the throughput of each run.
+ */
+public class SettlementEngine {
+    private static final int BETTORS_PER_LEAF = 8_192;
+    private static final int EQUESTRIANS_PER_LEAF = 256;
+    private static final int LATENCY_SAMPLES = 1_024;
+
+    private final ForkJoinPool pool;
+    private final long[] recentNanos = new long[LATENCY_SAMPLES];
+    private long settlements;
+
+    public SettlementEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SettlementEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Settles every open wager in the book at the odds it was placed at, then clears the wagers.
+     *
+     * @param book     the accounts and their open wagers
+     * @param winnerId the id of the winning equine
+     * @return how long settlement took and how many wagers it covered
+     */
+    public Report settle(BettorBook book, int winnerId) {
+        return settle(book, winnerId, Double.NaN);
+    }
+
+    /**
+     * Settles every open wager in the book, paying winning wagers the given winnings per unit
+     * staked instead of their own odds, as a pari-mutuel pool does.
+     */
+    public Report settle(BettorBook book, int winnerId, double winningsPerUnit) {
+        SimulatorEvents.Settlement event = new SimulatorEvents.Settlement();
+        event.begin();
+        long start = System.nanoTime();
+        long wagers = pool.invoke(new BookTask(book, 0, book.bettorCount, winnerId, winningsPerUnit));
+        book.clearWagers();
+        return record(event, book.bettorCount, wagers, System.nanoTime() - start);
+    }
+
+    /**
+     * Settles the open wagers on a race of every bettor in the list at the odds they were placed
+     * at. Wagers on other races stay open.
+     *
+     * @param bettors the bettors to settle
+     * @param raceId  the race that has finished
+     * @param winner  the winning equine
+     * @return how long settlement took and how many bettors it covered
+     */
+    public Report settle(List<Equestrian> bettors, long raceId, Equine winner) {
+        return settle(bettors, raceId, winner, Double.NaN);
+    }
+
+    /**
+     * Settles the open wagers on a race of every bettor in the list, paying winning wagers the
+     * given winnings per unit staked.
+     */
+    public Report settle(List<Equestrian> bettors, long raceId, Equine winner, double winningsPerUnit) {
+        SimulatorEvents.Settlement event = new SimulatorEvents.Settlement();
+        event.begin();
+        long start = System.nanoTime();
+        long wagers = pool.invoke(new EquestrianTask(bettors, 0, bettors.size(), raceId, winner, winningsPerUnit));
+        return record(event, bettors.size(), wagers, System.nanoTime() - start);
+    }
+
+    /**
+     * Hands back the stakes of the open wagers on a race of every bettor in the list, for a race
+     * that ended with nothing to pay out. Refunds are rare, so they run on the calling thread.
+     *
+     * @param bettors the bettors to refund
+     * @param raceId  the race whose wagers are void
+     * @return how long the refund took and how many bettors it covered
+     */
+    public Report refund(List<Equestrian> bettors, long raceId) {
+        SimulatorEvents.Settlement event = new SimulatorEvents.Settlement();
+        event.begin();
+        long start = System.nanoTime();
+        long wagers = 0;
+        for (Equestrian bettor : bettors) {
+            wagers += bettor.refundWagers(raceId);
+        }
+        return record(event, bettors.size(), wagers, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the 99th percentile duration of the recent settlements, in nanoseconds
+     */
+    public synchronized long getP99Nanos() {
+        int samples = (int) Math.min(settlements, LATENCY_SAMPLES);
+        if (samples == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(recentNanos, samples);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(samples * 0.99) - 1];
+    }
+
+    private Report record(SimulatorEvents.Settlement event, int bettors, long wagers, long nanos) {
+        synchronized (this) {
+            recentNanos[(int) (settlements++ % LATENCY_SAMPLES)] = nanos;
+        }
+        SimulatorMetrics.get().recordSettlement(nanos);
+        if (event.shouldCommit()) {
+            event.bettors = bettors;
+            event.wagers = wagers;
+            event.commit();
+        }
+        return new Report(bettors, wagers, nanos, getP99Nanos());
+    }
+
+    private static class BookTask extends RecursiveTask<Long> {
+        private final BettorBook book;
+        private final int from;
+        private final int to;
+        private final int winnerId;
+        private final double winningsPerUnit;
+
+        BookTask(BettorBook book, int from, int to, int winnerId, double winningsPerUnit) {
+            this.book = book;
+            this.from = from;
+            this.to = to;
+            this.winnerId = winnerId;
+            this.winningsPerUnit = winningsPerUnit;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > BETTORS_PER_LEAF) {
+                int middle = (from + to) >>> 1;
+                BookTask left = new BookTask(book, from, middle, winnerId, winningsPerUnit);
+                left.fork();
+                long settled = new BookTask(book, middle, to, winnerId, winningsPerUnit).compute();
+                return settled + left.join();
+            }
+
+            double[] balance = book.balance;
+            double[] totalWinnings = book.totalWinnings;
+            double[] totalLosses = book.totalLosses;
+            int[] victories = book.victories;
+            int[] lastWager = book.lastWager;
+            int[] previousWager = book.previousWager;
+            int[] equineId = book.equineId;
+            double[] stake = book.stake;
+            double[] odds = book.odds;
+            boolean pooled = !Double.isNaN(winningsPerUnit);
+            long settled = 0;
+            for (int bettor = from; bettor < to; bettor++) {
+                for (int wager = lastWager[bettor]; wager != BettorBook.NO_WAGER; wager = previousWager[wager]) {
+                    if (equineId[wager] == winnerId) {
+                        double winnings = stake[wager] * (pooled ? winningsPerUnit : odds[wager]);
+                        balance[bettor] += winnings + stake[wager];
+                        totalWinnings[bettor] += winnings;
+                        victories[bettor]++;
+                    } else {
+                        totalLosses[bettor] += stake[wager];
+                    }
+                    settled++;
+                }
+                lastWager[bettor] = BettorBook.NO_WAGER;
+            }
+            return settled;
+        }
+    }
+
+    private static class EquestrianTask extends RecursiveTask<Long> {
+        private final List<Equestrian> bettors;
+        private final int from;
+        private final int to;
+        private final long raceId;
+        private final Equine winner;
+        private final double winningsPerUnit;
+
+        EquestrianTask(List<Equestrian> bettors, int from, int to, long raceId, Equine winner, double winningsPerUnit) {
+            this.bettors = bettors;
+            this.from = from;
+            this.to = to;
+            this.raceId = raceId;
+            this.winner = winner;
+            this.winningsPerUnit = winningsPerUnit;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > EQUESTRIANS_PER_LEAF) {
+                int middle = (from + to) >>> 1;
+                EquestrianTask left = new EquestrianTask(bettors, from, middle, raceId, winner, winningsPerUnit);
+                left.fork();
+                long settled = new EquestrianTask(bettors, middle, to, raceId, winner, winningsPerUnit).compute();
+                return settled + left.join();
+            }
+
+            long settled = 0;
+            for (int i = from; i < to; i++) {
+                Equestrian bettor = bettors.get(i);
+                settled += Double.isNaN(winningsPerUnit)
+                        ? bettor.settleWager(raceId, winner)
+                        : bettor.settleWager(raceId, winner, winningsPerUnit);
+            }
+            return settled;
+        }
+    }
+
+    /**
+     * The outcome of one settlement run.
+     */
+    public static class Report {
+        private final int bettors;
+        private final long wagers;
+        private final long nanos;
+        private final long p99Nanos;
+
+        Report(int bettors, long wagers, long nanos, long p99Nanos) {
+            this.bettors = bettors;
+            this.wagers = wagers;
+            this.nanos = nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        public int getBettors() {
+            return bettors;
+        }
+
+        public long getWagers() {
+            return wagers;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getWagersPerSecond() {
+            return nanos == 0 ? 0 : wagers * 1e9 / nanos;
+        }
+
+        /**
+         * @return the 99th percentile duration of the engine's recent settlements, this one included
+         */
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Settled %d wagers for %d bettors in %.2f ms (%.0f wagers/s, p99 %.2f ms)",
+                    wagers, bettors, nanos / 1e6, getWagersPerSecond(), p99Nanos / 1e6);
+        }
+    }
+
+    /**
+     * Settles a series of races for a book of generated accounts and prints each report.
+     *
+     * Usage: java SettlementEngine [bettors] [races]
+     */
+    public static void main(String[] args) {
+        int bettorCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int races = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        SplittableRandom random = new SplittableRandom(42);
+        BettorBook book = new BettorBook(bettorCount, bettorCount * 2);
+        for (int i = 0; i < bettorCount; i++) {
+            book.addBettor(1_000_000);
+        }
+        SettlementEngine engine = new SettlementEngine();
+        for (int race = 0; race < races; race++) {
+            for (int bettor = 0; bettor < bettorCount; bettor++) {
+                int wagers = 1 + random.nextInt(3);
+                for (int w = 0; w < wagers; w++) {
+                    book.placeWager(bettor, random.nextInt(8), 1 + random.nextInt(100), 1 + random.nextDouble() * 9);
+                }
+            }
+            System.out.println(engine.settle(book, random.nextInt(8)));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events for the simulator's hot paths. They cost next to nothing unless a
+ * recording has them enabled, e.g. started with -XX:StartFlightRecording or from JDK Mission
+ * Control.
+ */
+public final class SimulatorEvents {
+    private SimulatorEvents() {
+    }
+
+    @Name("equine.Tick")
+    @Label("Competition Tick")
+    @Category("Equine Racing")
+    @Description("One tick of a competition")
+    @StackTrace(false)
+    public static class Tick extends Event {
+        @Label("Tick")
+        public long tick;
+
+        @Label("Lanes")
+        public int lanes;
+
+        @Label("Finished")
+        public boolean finished;
+    }
+
+    @Name("equine.Frame")
+    @Label("Race Track Frame")
+    @Category("Equine Racing")
+    @Description("One paint of the race track")
+    @StackTrace(false)
+    public static class Frame extends Event {
+        @Label("Lanes")
+        public int lanes;
+    }
+
+    @Name("equine.Settlement")
+    @Label("Wager Settlement")
+    @Category("Equine Racing")
+    @Description("Settling the open wagers at the end of a race")
+    @StackTrace(false)
+    public static class Settlement extends Event {
+        @Label("Bettors")
+        public int bettors;
+
+        @Label("Wagers")
+        public long wagers;
+    }
+}
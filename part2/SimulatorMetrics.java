@@ -0,0 +1,180 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters for a running simulator, readable over JMX under
+ * equine:type=SimulatorMetrics with jconsole or any other JMX client.
+ *
+ * One instance is shared by the whole JVM and registered the first time it is used. Recording
+ * only touches lock-free histograms and adders, so it stays on in production.
+ */
+public class SimulatorMetrics implements SimulatorMetricsMBean {
+    private static final String OBJECT_NAME = "equine:type=SimulatorMetrics";
+    private static final SimulatorMetrics INSTANCE = register(new SimulatorMetrics());
+
+    private final LatencyHistogram ticks = new LatencyHistogram();
+    private final LatencyHistogram frames = new LatencyHistogram();
+    private final LatencyHistogram settlements = new LatencyHistogram();
+    private final LongAdder races = new LongAdder();
+    private final LongAdder wagers = new LongAdder();
+    private final LongAdder stumbles = new LongAdder();
+    private volatile long windowShownMillis;
+    private volatile long backgroundShownMillis;
+
+    /**
+     * @return the metrics shared by the whole JVM
+     */
+    public static SimulatorMetrics get() {
+        return INSTANCE;
+    }
+
+    private static SimulatorMetrics register(SimulatorMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not register simulator metrics with JMX: " + e.getMessage());
+        }
+        return metrics;
+    }
+
+    public void recordTick(long nanos) {
+        ticks.record(nanos);
+    }
+
+    public void recordFrame(long nanos) {
+        frames.record(nanos);
+    }
+
+    public void recordSettlement(long nanos) {
+        settlements.record(nanos);
+    }
+
+    public void raceStarted() {
+        races.increment();
+    }
+
+    public void wagerPlaced() {
+        wagers.increment();
+    }
+
+    public void recordStumbles(int count) {
+        stumbles.add(count);
+    }
+
+    public void setWindowShownMillis(long millis) {
+        windowShownMillis = millis;
+    }
+
+    public void setBackgroundShownMillis(long millis) {
+        backgroundShownMillis = millis;
+    }
+
+    public LatencyHistogram getTicks() {
+        return ticks;
+    }
+
+    public LatencyHistogram getFrames() {
+        return frames;
+    }
+
+    public LatencyHistogram getSettlements() {
+        return settlements;
+    }
+
+    @Override
+    public long getTickCount() {
+        return ticks.getCount();
+    }
+
+    @Override
+    public long getTickP50Micros() {
+        return ticks.getPercentile(50) / 1_000;
+    }
+
+    @Override
+    public long getTickP99Micros() {
+        return ticks.getPercentile(99) / 1_000;
+    }
+
+    @Override
+    public long getTickMaxMicros() {
+        return ticks.getMax() / 1_000;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frames.getCount();
+    }
+
+    @Override
+    public long getFrameP50Micros() {
+        return frames.getPercentile(50) / 1_000;
+    }
+
+    @Override
+    public long getFrameP99Micros() {
+        return frames.getPercentile(99) / 1_000;
+    }
+
+    @Override
+    public long getFrameMaxMicros() {
+        return frames.getMax() / 1_000;
+    }
+
+    @Override
+    public long getSettlementCount() {
+        return settlements.getCount();
+    }
+
+    @Override
+    public long getSettlementP50Micros() {
+        return settlements.getPercentile(50) / 1_000;
+    }
+
+    @Override
+    public long getSettlementP99Micros() {
+        return settlements.getPercentile(99) / 1_000;
+    }
+
+    @Override
+    public long getSettlementMaxMicros() {
+        return settlements.getMax() / 1_000;
+    }
+
+    @Override
+    public long getRaceCount() {
+        return races.sum();
+    }
+
+    @Override
+    public long getWagerCount() {
+        return wagers.sum();
+    }
+
+    @Override
+    public long getStumbleCount() {
+        return stumbles.sum();
+    }
+
+    @Override
+    public long getWindowShownMillis() {
+        return windowShownMillis;
+    }
+
+    @Override
+    public long getBackgroundShownMillis() {
+        return backgroundShownMillis;
+    }
+
+    @Override
+    public void reset() {
+        ticks.reset();
+        frames.reset();
+        settlements.reset();
+        races.reset();
+        wagers.reset();
+        stumbles.reset();
+    }
+}
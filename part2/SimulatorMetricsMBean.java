@@ -0,0 +1,49 @@
+/**
+ * The management interface of SimulatorMetrics. Durations are in microseconds.
+ */
+public interface SimulatorMetricsMBean {
+    long getTickCount();
+
+    long getTickP50Micros();
+
+    long getTickP99Micros();
+
+    long getTickMaxMicros();
+
+    long getFrameCount();
+
+    long getFrameP50Micros();
+
+    long getFrameP99Micros();
+
+    long getFrameMaxMicros();
+
+    long getSettlementCount();
+
+    long getSettlementP50Micros();
+
+    long getSettlementP99Micros();
+
+    long getSettlementMaxMicros();
+
+    long getRaceCount();
+
+    long getWagerCount();
+
+    long getStumbleCount();
+
+    /**
+     * @return milliseconds from JVM start until the main window was shown, or 0 if it has not been
+     */
+    long getWindowShownMillis();
+
+    /**
+     * @return milliseconds from JVM start until the background picture was shown, or 0 if it has not been
+     */
+    long getBackgroundShownMillis();
+
+    /**
+     * Clears every histogram and counter.
+     */
+    void reset();
+}
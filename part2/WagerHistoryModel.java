@@ -0,0 +1,279 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+
+/**
+ * A table of the wagers in a WagerLedger that reads each row from the ledger when the table asks
+ * for it, so opening the history costs the same however many wagers it holds.
+ *
+ * Sorting and filtering build an array of ledger indices on a SwingWorker and swap it in on the
+ * event thread once it is ready. Until then the table keeps showing the previous view. Sort keys
+ * are packed into a long next to the ledger index and sorted as primitives.
+ */
+public class WagerHistoryModel extends AbstractTableModel {
+    public static final int EQUESTRIAN = 0;
+    public static final int EQUINE = 1;
+    public static final int AMOUNT = 2;
+    public static final int ODDS = 3;
+    public static final int OUTCOME = 4;
+
+    private static final String[] COLUMN_NAMES = {"Equestrian", "Equine", "Wager Amount", "Odds", "Won"};
+
+    /**
+     * Which wagers to show, by outcome.
+     */
+    public enum OutcomeFilter {
+        ALL("All"), WON("Won"), LOST("Lost"), OPEN("Open"), REFUNDED("Refunded");
+
+        private final String label;
+
+        OutcomeFilter(String label) {
+            this.label = label;
+        }
+
+        boolean accepts(int outcome) {
+            switch (this) {
+                case WON:
+                    return outcome == WagerLedger.WON;
+                case LOST:
+                    return outcome == WagerLedger.LOST;
+                case OPEN:
+                    return outcome == WagerLedger.OPEN;
+                case REFUNDED:
+                    return outcome == WagerLedger.REFUNDED;
+                default:
+                    return true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final WagerLedger ledger;
+    private final IntFunction<String> equineNames;
+    private final Map<Integer, String> nameCache = new HashMap<>();
+    private int rowCount;
+    private int[] view;
+    private int sortColumn = -1;
+    private boolean descending;
+    private OutcomeFilter outcomeFilter = OutcomeFilter.ALL;
+    private long bettorFilter = -1;
+    private SwingWorker<int[], Void> pendingView;
+
+    /**
+     * @param ledger      the wagers to show
+     * @param equineNames gives the name to show for an equine id
+     */
+    public WagerHistoryModel(WagerLedger ledger, IntFunction<String> equineNames) {
+        this.ledger = ledger;
+        this.equineNames = equineNames;
+        this.rowCount = (int) Math.min(ledger.size(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getRowCount() {
+        return view != null ? view.length : rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        long index = view != null ? view[row] : row;
+        switch (column) {
+            case EQUESTRIAN:
+                return "Equestrian " + ledger.getBettorId(index);
+            case EQUINE:
+                return getEquineName(ledger.getEquineId(index));
+            case AMOUNT:
+                return String.format("$%.2f", ledger.getAmount(index));
+            case ODDS:
+                return String.format("%.2f", ledger.getOdds(index));
+            default:
+                int outcome = ledger.getOutcome(index);
+                return outcome == WagerLedger.WON ? "Yes"
+                        : outcome == WagerLedger.LOST ? "No"
+                        : outcome == WagerLedger.REFUNDED ? "Refunded" : "Open";
+        }
+    }
+
+    /**
+     * Sorts by a column, or reverses the order when the table is already sorted by it.
+     *
+     * @param column the column to sort by
+     */
+    public void sortBy(int column) {
+        descending = column == sortColumn && !descending;
+        sortColumn = column;
+        rebuildView();
+    }
+
+    /**
+     * Shows only wagers with the given outcome.
+     */
+    public void setOutcomeFilter(OutcomeFilter outcomeFilter) {
+        this.outcomeFilter = outcomeFilter;
+        rebuildView();
+    }
+
+    /**
+     * Shows only the wagers of one bettor.
+     *
+     * @param bettorId the bettor's id, or -1 to show every bettor
+     */
+    public void setBettorFilter(long bettorId) {
+        this.bettorFilter = bettorId;
+        rebuildView();
+    }
+
+    /**
+     * @return whether a sort or filter is still being worked out
+     */
+    public boolean isUpdating() {
+        return pendingView != null;
+    }
+
+    private String getEquineName(int equineId) {
+        return nameCache.computeIfAbsent(equineId, id -> equineNames.apply(id));
+    }
+
+    /**
+     * Starts working out the rows for the current sort and filters, abandoning any earlier
+     * request that has not finished.
+     */
+    private void rebuildView() {
+        if (pendingView != null) {
+            pendingView.cancel(false);
+        }
+        long size = rowCount;
+        int column = sortColumn;
+        boolean reversed = descending;
+        OutcomeFilter outcomes = outcomeFilter;
+        long bettor = bettorFilter;
+        Map<Integer, String> names = new HashMap<>(nameCache);
+        SwingWorker<int[], Void> worker = new SwingWorker<>() {
+            @Override
+            protected int[] doInBackground() {
+                return buildView(size, column, reversed, outcomes, bettor, names, this::isCancelled);
+            }
+
+            @Override
+            protected void done() {
+                if (pendingView != this || isCancelled()) {
+                    return;
+                }
+                pendingView = null;
+                try {
+                    view = get();
+                    nameCache.putAll(names);
+                    fireTableDataChanged();
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(null, "Could not sort the wager history: " + e.getCause(),
+                            "Wager History", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        pendingView = worker;
+        worker.execute();
+    }
+
+    private int[] buildView(long size, int column, boolean reversed, OutcomeFilter outcomes, long bettor,
+                            Map<Integer, String> names, BooleanSupplier cancelled) {
+        int[] equineIds = null;
+        int[] equineRanks = null;
+        if (column == EQUINE) {
+            equineIds = collectEquineIds(size, names);
+            equineRanks = rankByName(equineIds, names);
+        }
+        int[] sortedIds = equineIds;
+        int[] ranks = equineRanks;
+        long[] keyed = new long[(int) size];
+        int[] count = {0};
+        ledger.forEach(0, size, (index, bettorId, equineId, amount, odds, outcome) -> {
+            if ((bettor >= 0 && bettorId != bettor) || !outcomes.accepts(outcome)) {
+                return;
+            }
+            long key;
+            switch (column) {
+                case EQUESTRIAN:
+                    key = Math.min(bettorId, Integer.MAX_VALUE);
+                    break;
+                case EQUINE:
+                    key = ranks[Arrays.binarySearch(sortedIds, equineId)];
+                    break;
+                case AMOUNT:
+                    key = Math.min(Math.round(amount * 100), Integer.MAX_VALUE);
+                    break;
+                case ODDS:
+                    key = Math.min(Math.round(odds * 1000), Integer.MAX_VALUE);
+                    break;
+                case OUTCOME:
+                    key = outcome;
+                    break;
+                default:
+                    key = 0;
+            }
+            keyed[count[0]++] = key << 32 | index;
+        });
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        long[] rows = Arrays.copyOf(keyed, count[0]);
+        if (column >= 0) {
+            Arrays.parallelSort(rows);
+        }
+        int[] indices = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            indices[reversed ? rows.length - 1 - i : i] = (int) rows[i];
+        }
+        return indices;
+    }
+
+    /**
+     * Finds every equine in the ledger, looking up the names of those not seen before.
+     *
+     * @return the distinct equine ids in ascending order
+     */
+    private int[] collectEquineIds(long size, Map<Integer, String> names) {
+        ledger.forEach(0, size, (index, bettorId, equineId, amount, odds, outcome) -> {
+            if (!names.containsKey(equineId)) {
+                names.put(equineId, equineNames.apply(equineId));
+            }
+        });
+        return names.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * @return for each id, its position when the equines are ordered by name
+     */
+    private static int[] rankByName(int[] ids, Map<Integer, String> names) {
+        List<Integer> byName = new ArrayList<>();
+        for (int id : ids) {
+            byName.add(id);
+        }
+        byName.sort((a, b) -> names.get(a).compareTo(names.get(b)));
+        int[] ranks = new int[ids.length];
+        for (int rank = 0; rank < byName.size(); rank++) {
+            ranks[Arrays.binarySearch(ids, byName.get(rank))] = rank;
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An append-only file of wagers with one fixed-width binary record per wager, accessed through
+ * memory-mapped segments.
+ *
+ * The header holds the record count and the highest bettor and equine ids recorded, so opening
+ * a ledger maps the file without reading it, and the heap cost does not grow with the number of
+ * wagers. A new session starts its ids above those, so old records never point at a bettor or
+ * equine of the new session. Records are read back by index or streamed through a visitor
+ * without creating an object per record.
+ *
+ * Layout: a 32 byte header (magic, version, record count, highest bettor id, highest equine id)
+ * followed by 32 byte records of bettor id (long), equine id (int), outcome (int), amount
+ * (double) and odds (double).
+ */
+public class WagerLedger implements AutoCloseable {
+    public static final int OPEN = 0;
+    public static final int WON = 1;
+    public static final int LOST = 2;
+    public static final int REFUNDED = 3;
+
+    private static final int MAGIC = 0x57414752;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT = 8;
+    private static final int MAX_BETTOR_ID = 16;
+    private static final int MAX_EQUINE_ID = 24;
+    private static final int RECORD_SIZE = 32;
+    private static final int RECORDS_PER_SEGMENT = 1 << 20;
+    private static final long SEGMENT_SIZE = (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+
+    private static final int BETTOR_ID = 0;
+    private static final int EQUINE_ID = 8;
+    private static final int OUTCOME = 12;
+    private static final int AMOUNT = 16;
+    private static final int ODDS = 24;
+
+    /**
+     * Receives ledger records one at a time.
+     */
+    public interface RecordVisitor {
+        void visit(long index, long bettorId, int equineId, double amount, double odds, int outcome);
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long recordCount;
+
+    private WagerLedger(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.header = map(0, HEADER_SIZE);
+        if (channel.size() <= HEADER_SIZE && header.getInt(0) == 0) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(COUNT, 0);
+            header.putLong(MAX_BETTOR_ID, 0);
+            header.putInt(MAX_EQUINE_ID, 0);
+        } else if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a wager ledger");
+        } else if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported wager ledger version " + header.getInt(4));
+        }
+        recordCount = header.getLong(COUNT);
+    }
+
+    /**
+     * Opens the ledger at the given path, creating it if it does not exist.
+     *
+     * @param path the ledger file
+     * @return the open ledger
+     * @throws IOException if the file cannot be opened or is not a ledger
+     */
+    public static WagerLedger open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new WagerLedger(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds an open wager to the end of the ledger.
+     *
+     * @return the index of the new record
+     */
+    public synchronized long append(long bettorId, int equineId, double amount, double odds) {
+        long index = recordCount;
+        MappedByteBuffer segment = segmentFor(index);
+        int offset = offsetOf(index);
+        segment.putLong(offset + BETTOR_ID, bettorId);
+        segment.putInt(offset + EQUINE_ID, equineId);
+        segment.putInt(offset + OUTCOME, OPEN);
+        segment.putDouble(offset + AMOUNT, amount);
+        segment.putDouble(offset + ODDS, odds);
+        if (bettorId > header.getLong(MAX_BETTOR_ID)) {
+            header.putLong(MAX_BETTOR_ID, bettorId);
+        }
+        if (equineId > header.getInt(MAX_EQUINE_ID)) {
+            header.putInt(MAX_EQUINE_ID, equineId);
+        }
+        header.putLong(COUNT, index + 1);
+        recordCount = index + 1;
+        return index;
+    }
+
+    /**
+     * Records whether a wager was won or lost.
+     *
+     * @param index   the index of the record
+     * @param outcome WON or LOST
+     */
+    public void setOutcome(long index, int outcome) {
+        checkIndex(index);
+        segmentFor(index).putInt(offsetOf(index) + OUTCOME, outcome);
+    }
+
+    /**
+     * Replaces the odds of a wager, for payouts that are only known at settlement.
+     */
+    public void setOdds(long index, double odds) {
+        checkIndex(index);
+        segmentFor(index).putDouble(offsetOf(index) + ODDS, odds);
+    }
+
+    public long size() {
+        return recordCount;
+    }
+
+    /**
+     * @return the highest bettor id in the ledger, or 0 if it is empty
+     */
+    public synchronized long getMaxBettorId() {
+        return header.getLong(MAX_BETTOR_ID);
+    }
+
+    /**
+     * @return the highest equine id in the ledger, or 0 if it is empty
+     */
+    public synchronized int getMaxEquineId() {
+        return header.getInt(MAX_EQUINE_ID);
+    }
+
+    public long getBettorId(long index) {
+        checkIndex(index);
+        return segmentFor(index).getLong(offsetOf(index) + BETTOR_ID);
+    }
+
+    public int getEquineId(long index) {
+        checkIndex(index);
+        return segmentFor(index).getInt(offsetOf(index) + EQUINE_ID);
+    }
+
+    public int getOutcome(long index) {
+        checkIndex(index);
+        return segmentFor(index).getInt(offsetOf(index) + OUTCOME);
+    }
+
+    public double getAmount(long index) {
+        checkIndex(index);
+        return segmentFor(index).getDouble(offsetOf(index) + AMOUNT);
+    }
+
+    public double getOdds(long index) {
+        checkIndex(index);
+        return segmentFor(index).getDouble(offsetOf(index) + ODDS);
+    }
+
+    /**
+     * Streams every record, oldest first.
+     *
+     * @param visitor receives each record
+     */
+    public void forEach(RecordVisitor visitor) {
+        forEach(0, recordCount, visitor);
+    }
+
+    /**
+     * Streams the records in [from, to), oldest first.
+     */
+    public void forEach(long from, long to, RecordVisitor visitor) {
+        for (long index = from; index < Math.min(to, recordCount); index++) {
+            MappedByteBuffer segment = segmentFor(index);
+            int offset = offsetOf(index);
+            visitor.visit(index,
+                    segment.getLong(offset + BETTOR_ID),
+                    segment.getInt(offset + EQUINE_ID),
+                    segment.getDouble(offset + AMOUNT),
+                    segment.getDouble(offset + ODDS),
+                    segment.getInt(offset + OUTCOME));
+        }
+    }
+
+    /**
+     * Writes changed pages back to disk.
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("No wager record " + index);
+        }
+    }
+
+    private static int offsetOf(long index) {
+        return (int) (index % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    private MappedByteBuffer segmentFor(long index) {
+        int segment = (int) (index / RECORDS_PER_SEGMENT);
+        MappedByteBuffer[] mapped = segments;
+        if (segment < mapped.length) {
+            return mapped[segment];
+        }
+        return mapSegment(segment);
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int segment) {
+        MappedByteBuffer[] mapped = segments;
+        if (segment >= mapped.length) {
+            mapped = Arrays.copyOf(mapped, segment + 1);
+            for (int i = segments.length; i <= segment; i++) {
+                mapped[i] = map(HEADER_SIZE + i * SEGMENT_SIZE, SEGMENT_SIZE);
+            }
+            segments = mapped;
+        }
+        return mapped[segment];
+    }
+
+    private MappedByteBuffer map(long position, long size) {
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+
+/**
+ * Writes wagers to a WagerLedger, reopens it and checks every record comes back as written.
+ *
+ * Usage: java WagerLedgerTestDriver
+ */
+public class WagerLedgerTestDriver {
+    public static void main(String[] args) throws IOException {
+        new WagerLedgerTestDriver().runTests();
+    }
+
+    private void runTests() throws IOException {
+        Path file = Files.createTempFile("wagers", ".ledger");
+        Files.delete(file);
+        try {
+            try (WagerLedger ledger = WagerLedger.open(file)) {
+                validate(0L, ledger.size());
+                validate(0L, ledger.getMaxBettorId());
+                validate(0, ledger.getMaxEquineId());
+                validate(0L, ledger.append(7, 3, 25.5, 2.5));
+                validate(1L, ledger.append(2, 11, 10.0, 4.0));
+                ledger.setOutcome(0, WagerLedger.WON);
+                ledger.setOdds(1, 3.75);
+                ledger.setOutcome(1, WagerLedger.LOST);
+            }
+
+            try (WagerLedger ledger = WagerLedger.open(file)) {
+                validate(2L, ledger.size());
+                validate(7L, ledger.getBettorId(0));
+                validate(3, ledger.getEquineId(0));
+                validate(25.5, ledger.getAmount(0));
+                validate(2.5, ledger.getOdds(0));
+                validate(WagerLedger.WON, ledger.getOutcome(0));
+                validate(2L, ledger.getBettorId(1));
+                validate(11, ledger.getEquineId(1));
+                validate(3.75, ledger.getOdds(1));
+                validate(WagerLedger.LOST, ledger.getOutcome(1));
+
+                // The highest ids survive a restart, so the next session can number past them.
+                validate(7L, ledger.getMaxBettorId());
+                validate(11, ledger.getMaxEquineId());
+
+                long[] visited = {0};
+                double[] staked = {0};
+                ledger.forEach((index, bettorId, equineId, amount, odds, outcome) -> {
+                    visited[0]++;
+                    staked[0] += amount;
+                });
+                validate(2L, visited[0]);
+                validate(35.5, staked[0]);
+
+                // A bettor's settled wager is written back to its record.
+                Equine equine = new Equine("Shadowfax", Equine.Species.ARABIAN, Color.GRAY, 0.9, new HashSet<>(), "🐎");
+                equine.setQuotedOdds(1.5);
+                Equestrian bettor = new Equestrian(ledger.getMaxBettorId() + 1, 100, ledger);
+                validate(true, bettor.placeWager(1, equine, 20));
+                validate(WagerLedger.OPEN, ledger.getOutcome(2));
+                bettor.settleWager(1, equine);
+                validate(8L, ledger.getBettorId(2));
+                validate(WagerLedger.WON, ledger.getOutcome(2));
+                validate(130.0, bettor.getBalance());
+                validate(0, bettor.getWagerHistory().size());
+
+                // Settling a race leaves the wagers on other races open, and a race that ends
+                // without a result hands its stakes back.
+                validate(true, bettor.placeWager(2, equine, 10));
+                validate(true, bettor.placeWager(3, equine, 10));
+                validate(0, bettor.settleWager(4, equine));
+                validate(1, bettor.settleWager(2, equine));
+                validate(WagerLedger.WON, ledger.getOutcome(3));
+                validate(WagerLedger.OPEN, ledger.getOutcome(4));
+                validate(1, bettor.refundWagers(3));
+                validate(WagerLedger.REFUNDED, ledger.getOutcome(4));
+                validate(145.0, bettor.getBalance());
+                validate(0, bettor.getWagerHistory().size());
+            }
+
+            try (WagerLedger ledger = WagerLedger.open(file)) {
+                validate(5L, ledger.size());
+                validate(8L, ledger.getMaxBettorId());
+            }
+
+            Files.write(file, new byte[]{1, 2, 3, 4});
+            boolean rejected = false;
+            try (WagerLedger ledger = WagerLedger.open(file)) {
+                validate(0L, ledger.size());
+            } catch (IOException e) {
+                rejected = true;
+            }
+            validate(true, rejected);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println("Success!");
+    }
+
+    private <T> void validate(T expected, T actual) {
+        if (!expected.equals(actual))
+            throw new AssertionError("Expected: " + expected + ", but got: " + actual);
+    }
+}
@@ -0,0 +1,99 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Moves the lanes of a CompetitionField in batches as wide as the CPU's preferred double
+ * vector, using the incubating Vector API. Draws are hashed in int lanes half the width, then
+ * widened to doubles and compared there, since converting the values is much faster on JDK 17
+ * than converting the masks. When an equine in a batch reaches the finish, only the lanes
+ * before it are kept, so the result is the same as moving the lanes one at a time. Lanes after
+ * the last full batch are left to the scalar kernel.
+ *
+ * Only compiled with mvn -Pvector, and only usable when the JVM is started with
+ * --add-modules jdk.incubator.vector.
+ */
+class VectorCompetitionFieldKernel implements CompetitionFieldKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    /** GAMMA times each lane's offset in a batch, plus one GAMMA for the first draw. */
+    private static final IntVector STEPS;
+
+    static {
+        int[] steps = new int[INTS.length()];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = (i + 1) * GAMMA;
+        }
+        STEPS = IntVector.fromArray(INTS, steps, 0);
+    }
+
+    @Override
+    public int tick(CompetitionField field, int seed) {
+        int size = field.size();
+        double competitionDistance = field.getCompetitionDistance();
+        int[] moveThreshold = field.moveThreshold;
+        int[] stumbleThreshold = field.stumbleThreshold;
+        double[] stride = field.stride;
+        double[] distanceTraveled = field.distanceTraveled;
+        boolean[] stumbled = field.stumbled;
+        int bound = DOUBLES.loopBound(size);
+        for (int lane = 0; lane < bound; lane += DOUBLES.length()) {
+            VectorMask<Double> down = VectorMask.fromArray(DOUBLES, stumbled, lane);
+            if (down.allTrue()) {
+                continue;
+            }
+            VectorMask<Double> moves = draws(seed, lane)
+                    .compare(VectorOperators.LE, thresholds(moveThreshold, lane)).andNot(down);
+            VectorMask<Double> stumbles = draws(seed, size + lane)
+                    .compare(VectorOperators.LE, thresholds(stumbleThreshold, lane)).andNot(down);
+
+            DoubleVector distance = DoubleVector.fromArray(DOUBLES, distanceTraveled, lane);
+            DoubleVector moved = distance.add(DoubleVector.fromArray(DOUBLES, stride, lane)).min(competitionDistance);
+            VectorMask<Double> finishes = moved.compare(VectorOperators.GE, competitionDistance).and(moves);
+            if (finishes.anyTrue()) {
+                // Lanes after the winner are not moved, and the winner does not stumble.
+                int winner = finishes.firstTrue();
+                VectorMask<Double> before = DOUBLES.indexInRange(0, winner);
+                distance.blend(moved, moves.and(DOUBLES.indexInRange(0, winner + 1))).intoArray(distanceTraveled, lane);
+                stumble(field, down, stumbles.and(before), lane);
+                return lane + winner;
+            }
+            if (moves.anyTrue()) {
+                distance.blend(moved, moves).intoArray(distanceTraveled, lane);
+            }
+            stumble(field, down, stumbles, lane);
+        }
+        return ScalarCompetitionFieldKernel.tickLanes(field, seed, bound, size);
+    }
+
+    @Override
+    public String name() {
+        return "vector " + DOUBLES.vectorBitSize() + "-bit";
+    }
+
+    private static void stumble(CompetitionField field, VectorMask<Double> down, VectorMask<Double> stumbles, int lane) {
+        if (stumbles.anyTrue()) {
+            down.or(stumbles).intoArray(field.stumbled, lane);
+            field.runners -= stumbles.trueCount();
+        }
+    }
+
+    /**
+     * @return draws index to index + INTS.length() - 1, as CompetitionFieldKernel.draw makes them
+     */
+    private static DoubleVector draws(int seed, int index) {
+        IntVector x = STEPS.add(seed + index * GAMMA);
+        x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 16)).mul(0x7FEB352D);
+        x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 15)).mul(0x846CA68B);
+        x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 16)).lanewise(VectorOperators.LSHR, 1);
+        return (DoubleVector) x.convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+
+    private static DoubleVector thresholds(int[] threshold, int lane) {
+        return (DoubleVector) IntVector.fromArray(INTS, threshold, lane).convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+}